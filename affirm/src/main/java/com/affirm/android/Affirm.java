@@ -2,6 +2,7 @@ package com.affirm.android;
 
 import android.app.Activity;
 import android.app.FragmentManager;
+import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 import android.view.View;
@@ -12,11 +13,18 @@ import com.affirm.android.model.AffirmTrack;
 import com.affirm.android.model.CardDetails;
 import com.affirm.android.model.Checkout;
 import com.affirm.android.model.PromoPageType;
+import com.affirm.android.model.RequestMetrics;
 import com.affirm.android.model.VcnReason;
 
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import okhttp3.OkHttpClient;
+
 import static android.app.Activity.RESULT_CANCELED;
 import static android.app.Activity.RESULT_OK;
 import static com.affirm.android.AffirmConstants.CHECKOUT_ERROR;
@@ -95,14 +103,177 @@ public final class Affirm {
         }
     }
 
+    /**
+     * How the WebViews of the SDK cache the pages and assets they load.
+     */
+    public enum WebViewCachePolicy {
+        /**
+         * Never use the cache, and clear it whenever an Affirm WebView is created or destroyed.
+         */
+        NO_CACHE,
+        /**
+         * Use the standard WebView HTTP cache, so repeat opens of the modal, prequal and checkout
+         * screens load the static assets locally.
+         */
+        HTTP_CACHE,
+        /**
+         * Use the HTTP cache, and also serve {@code affirm.js} and the other assets of the Affirm
+         * CDN from a disk cache managed by the SDK, without waiting on the network. Cached assets
+         * are revalidated in the background, and downloaded again after a day or their max-age.
+         */
+        ASSET_CACHE
+    }
+
+    /**
+     * The state of the circuit breaker of a kind of request to an Affirm host.
+     */
+    public enum CircuitState {
+        /**
+         * Requests are sent as usual.
+         */
+        CLOSED,
+        /**
+         * The host failed repeatedly, requests fail right away without being sent. Cached promos
+         * keep being shown.
+         */
+        OPEN,
+        /**
+         * A single probe request is sent to find out whether the host recovered.
+         */
+        HALF_OPEN
+    }
+
+    public interface CircuitBreakerListener {
+        /**
+         * @param host  the Affirm host
+         * @param tag   the kind of request, e.g. GET_NEW_PROMO or CHECKOUT, each has its own
+         *              circuit
+         * @param state the new state of the circuit
+         */
+        void onCircuitStateChanged(@NonNull String host,
+                                   @Nullable String tag,
+                                   @NonNull CircuitState state);
+    }
+
+    public interface RequestMetricsListener {
+        void onRequestMetrics(@NonNull RequestMetrics metrics);
+    }
+
     public static final class Configuration {
         final String publicKey;
         final Environment environment;
         final String merchantName;
+        final int trackerBatchSize;
+        final long trackerFlushIntervalMillis;
+        final File trackerCacheDir;
+        final double trackerSampleRate;
+        final int trackerMaxEventsPerMinute;
+        final long trackerDuplicateWindowMillis;
+        final int promoCacheSize;
+        final long promoCacheTtlMillis;
+        final int promoAmountBucketCents;
+        final WebViewCachePolicy webViewCachePolicy;
+        final Executor callbackExecutor;
+        final int maxRequestAttempts;
+        final int circuitFailureThreshold;
+        final long circuitOpenDurationMillis;
+        final CircuitBreakerListener circuitBreakerListener;
+        final OkHttpClient okHttpClient;
+        final long connectTimeoutMillis;
+        final long readTimeoutMillis;
+        final RequestMetricsListener requestMetricsListener;
+        final boolean trackRequestMetrics;
 
         Configuration(Builder builder) {
             this.publicKey = builder.publicKey;
             this.merchantName = builder.merchantName;
+            this.trackerCacheDir = builder.trackerCacheDir;
+            this.promoAmountBucketCents = builder.promoAmountBucketCents;
+            this.callbackExecutor = builder.callbackExecutor;
+            this.circuitBreakerListener = builder.circuitBreakerListener;
+            this.okHttpClient = builder.okHttpClient;
+            this.requestMetricsListener = builder.requestMetricsListener;
+            this.trackRequestMetrics = builder.trackRequestMetrics;
+
+            if (builder.trackerBatchSize > 0) {
+                this.trackerBatchSize = builder.trackerBatchSize;
+            } else {
+                this.trackerBatchSize = AffirmTrackerQueue.DEFAULT_BATCH_SIZE;
+            }
+
+            if (builder.trackerFlushIntervalMillis > 0) {
+                this.trackerFlushIntervalMillis = builder.trackerFlushIntervalMillis;
+            } else {
+                this.trackerFlushIntervalMillis = AffirmTrackerQueue.DEFAULT_FLUSH_INTERVAL_MILLIS;
+            }
+
+            if (builder.trackerSampleRate >= 0 && builder.trackerSampleRate <= 1) {
+                this.trackerSampleRate = builder.trackerSampleRate;
+            } else {
+                this.trackerSampleRate = AffirmTrackerThrottle.DEFAULT_SAMPLE_RATE;
+            }
+
+            if (builder.trackerMaxEventsPerMinute > 0) {
+                this.trackerMaxEventsPerMinute = builder.trackerMaxEventsPerMinute;
+            } else {
+                this.trackerMaxEventsPerMinute =
+                        AffirmTrackerThrottle.DEFAULT_MAX_EVENTS_PER_MINUTE;
+            }
+
+            if (builder.trackerDuplicateWindowMillis >= 0) {
+                this.trackerDuplicateWindowMillis = builder.trackerDuplicateWindowMillis;
+            } else {
+                this.trackerDuplicateWindowMillis =
+                        AffirmTrackerThrottle.DEFAULT_DUPLICATE_WINDOW_MILLIS;
+            }
+
+            if (builder.promoCacheSize > 0) {
+                this.promoCacheSize = builder.promoCacheSize;
+            } else {
+                this.promoCacheSize = PromoCache.DEFAULT_MAX_ENTRIES;
+            }
+
+            if (builder.promoCacheTtlMillis >= 0) {
+                this.promoCacheTtlMillis = builder.promoCacheTtlMillis;
+            } else {
+                this.promoCacheTtlMillis = PromoCache.DEFAULT_TTL_MILLIS;
+            }
+
+            if (builder.maxRequestAttempts > 0) {
+                this.maxRequestAttempts = builder.maxRequestAttempts;
+            } else {
+                this.maxRequestAttempts = AffirmRetryInterceptor.DEFAULT_MAX_ATTEMPTS;
+            }
+
+            if (builder.circuitFailureThreshold > 0) {
+                this.circuitFailureThreshold = builder.circuitFailureThreshold;
+            } else {
+                this.circuitFailureThreshold = AffirmCircuitBreaker.DEFAULT_FAILURE_THRESHOLD;
+            }
+
+            if (builder.circuitOpenDurationMillis > 0) {
+                this.circuitOpenDurationMillis = builder.circuitOpenDurationMillis;
+            } else {
+                this.circuitOpenDurationMillis = AffirmCircuitBreaker.DEFAULT_OPEN_DURATION_MILLIS;
+            }
+
+            if (builder.connectTimeoutMillis > 0) {
+                this.connectTimeoutMillis = builder.connectTimeoutMillis;
+            } else {
+                this.connectTimeoutMillis = AffirmPlugins.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+            }
+
+            if (builder.readTimeoutMillis > 0) {
+                this.readTimeoutMillis = builder.readTimeoutMillis;
+            } else {
+                this.readTimeoutMillis = AffirmPlugins.DEFAULT_READ_TIMEOUT_MILLIS;
+            }
+
+            if (builder.webViewCachePolicy != null) {
+                this.webViewCachePolicy = builder.webViewCachePolicy;
+            } else {
+                this.webViewCachePolicy = WebViewCachePolicy.NO_CACHE;
+            }
 
             if (builder.environment != null) {
                 this.environment = builder.environment;
@@ -143,6 +314,26 @@ public final class Affirm {
             private int vcnCheckoutRequestCode;
             private int prequalRequestCode;
             private String receiveReasonCodes;
+            private int trackerBatchSize;
+            private long trackerFlushIntervalMillis;
+            private File trackerCacheDir;
+            private double trackerSampleRate = -1;
+            private int trackerMaxEventsPerMinute;
+            private long trackerDuplicateWindowMillis = -1;
+            private int promoCacheSize;
+            private long promoCacheTtlMillis = -1;
+            private int promoAmountBucketCents;
+            private WebViewCachePolicy webViewCachePolicy;
+            private Executor callbackExecutor;
+            private int maxRequestAttempts;
+            private int circuitFailureThreshold;
+            private long circuitOpenDurationMillis;
+            private CircuitBreakerListener circuitBreakerListener;
+            private OkHttpClient okHttpClient;
+            private long connectTimeoutMillis;
+            private long readTimeoutMillis;
+            private RequestMetricsListener requestMetricsListener;
+            private boolean trackRequestMetrics;
 
             /**
              * @param publicKey Set the public key to be used by Affirm.
@@ -250,6 +441,249 @@ public final class Affirm {
                 return this;
             }
 
+            /**
+             * Set how tracking events are batched before being sent, it's optional.
+             * Events are sent as soon as {@code batchSize} events are queued, or after
+             * {@code flushInterval} has elapsed since the first queued event.
+             *
+             * @param batchSize     max number of events sent in one request
+             * @param flushInterval max time an event stays in the queue
+             * @param unit          the time unit of {@code flushInterval}
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackerFlushPolicy(int batchSize, long flushInterval,
+                                                 @NonNull TimeUnit unit) {
+                this.trackerBatchSize = batchSize;
+                this.trackerFlushIntervalMillis = unit.toMillis(flushInterval);
+                return this;
+            }
+
+            /**
+             * Set a directory used to keep pending tracking events across process death, it's
+             * optional. Typically {@code context.getCacheDir()}. If not set, pending events are
+             * only kept in memory.
+             *
+             * @param cacheDir the directory to store pending tracking events
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackerCacheDir(@Nullable File cacheDir) {
+                this.trackerCacheDir = cacheDir;
+                return this;
+            }
+
+            /**
+             * Set the fraction of tracking events sent to Affirm, it's optional. The default
+             * sends all of them.
+             *
+             * @param sampleRate the fraction of events sent, between 0 and 1
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackerSampleRate(double sampleRate) {
+                this.trackerSampleRate = sampleRate;
+                return this;
+            }
+
+            /**
+             * Set the max number of tracking events of one kind sent per minute, it's optional.
+             * Up to that many events can be sent at once, after which they are let through at
+             * the same rate. The default is 30.
+             *
+             * @param maxEventsPerMinute the max number of events of one kind per minute
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackerRateLimit(int maxEventsPerMinute) {
+                this.trackerMaxEventsPerMinute = maxEventsPerMinute;
+                return this;
+            }
+
+            /**
+             * Set the window in which identical tracking events are collapsed, it's optional.
+             * The first event is sent right away, its repeats within the window are sent once
+             * at the end of the window, with their count. The default is 10 seconds, pass 0 to
+             * send every event.
+             *
+             * @param window the time identical events are collapsed for
+             * @param unit   the time unit of {@code window}
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackerDuplicateWindow(long window, @NonNull TimeUnit unit) {
+                this.trackerDuplicateWindowMillis = unit.toMillis(window);
+                return this;
+            }
+
+            /**
+             * Set how long a promo message is considered fresh, it's optional. Fresh promos are
+             * shown straight from memory, older ones are shown while being refreshed in the
+             * background. Pass 0 to always refresh.
+             *
+             * @param ttl  the time a cached promo is considered fresh
+             * @param unit the time unit of {@code ttl}
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setPromoCacheTtl(long ttl, @NonNull TimeUnit unit) {
+                this.promoCacheTtlMillis = unit.toMillis(ttl);
+                return this;
+            }
+
+            /**
+             * Set the max number of promo messages kept in memory, it's optional
+             *
+             * @param promoCacheSize the max number of cached promo messages
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setPromoCacheSize(int promoCacheSize) {
+                this.promoCacheSize = promoCacheSize;
+                return this;
+            }
+
+            /**
+             * Round promo amounts to the given granularity before requesting the promo message,
+             * it's optional and disabled by default. Close amounts then share one request and one
+             * cache entry, and the monthly payment of the message is scaled back to the actual
+             * amount locally.
+             * <p>
+             * Only enable it if your promos don't change tier within one bucket, e.g. a
+             * granularity of 500 requests $19.99 and $20.01 as $20.00. Amounts below the
+             * granularity are requested as they are.
+             *
+             * @param granularityCents the bucket size in cents, 0 to disable bucketing
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setPromoAmountBucket(int granularityCents) {
+                this.promoAmountBucketCents = granularityCents;
+                return this;
+            }
+
+            /**
+             * Set how the WebViews of the SDK cache what they load, it's optional. The default is
+             * {@link WebViewCachePolicy#NO_CACHE}.
+             *
+             * @param webViewCachePolicy the cache policy of the WebViews
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setWebViewCachePolicy(@NonNull WebViewCachePolicy webViewCachePolicy) {
+                this.webViewCachePolicy = webViewCachePolicy;
+                return this;
+            }
+
+            /**
+             * Set the executor running the callbacks of {@link PromoBatch}, it's optional. The
+             * default runs them on the main thread. An executor running them directly can be
+             * used in tests, or if your app does its own threading. The views of the SDK are
+             * always updated on the main thread.
+             *
+             * @param callbackExecutor the executor running the callbacks
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setCallbackExecutor(@NonNull Executor callbackExecutor) {
+                this.callbackExecutor = callbackExecutor;
+                return this;
+            }
+
+            /**
+             * Set how many times a request failing on a transient error is attempted, it's
+             * optional. The default is 3, pass 1 to never retry. Retries wait an exponential
+             * backoff with jitter, or the {@code Retry-After} of the response. Only requests that
+             * are safe to send twice are retried, e.g. promo requests but not checkouts.
+             *
+             * @param maxAttempts the max number of attempts of a request, including the first
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setMaxRequestAttempts(int maxAttempts) {
+                this.maxRequestAttempts = maxAttempts;
+                return this;
+            }
+
+            /**
+             * Set when the circuit breaker of an Affirm host opens, it's optional. After
+             * {@code failureThreshold} consecutive failures of a kind of request, e.g. promos,
+             * these requests to the host fail right away for {@code openDuration}, then a single
+             * request probes whether the host recovered. The default opens after 5 failures, for
+             * 30 seconds.
+             *
+             * @param failureThreshold the number of consecutive failures opening the circuit
+             * @param openDuration     the time the circuit stays open before being probed
+             * @param unit             the time unit of {@code openDuration}
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setCircuitBreaker(int failureThreshold, long openDuration,
+                                             @NonNull TimeUnit unit) {
+                this.circuitFailureThreshold = failureThreshold;
+                this.circuitOpenDurationMillis = unit.toMillis(openDuration);
+                return this;
+            }
+
+            /**
+             * Set a listener notified when the circuit breaker of an Affirm host changes state,
+             * it's optional. It runs on the callback executor.
+             *
+             * @param listener the listener of the circuit states
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setCircuitBreakerListener(@Nullable CircuitBreakerListener listener) {
+                this.circuitBreakerListener = listener;
+                return this;
+            }
+
+            /**
+             * Set the {@link OkHttpClient} of your app, it's optional. The SDK derives its own
+             * client from it with {@link OkHttpClient#newBuilder()}, so both share the same
+             * connection pool, dispatcher and threads instead of the SDK running its own. The
+             * SDK adds its interceptors, timeouts and redirect policy to the derived client only,
+             * your client is not modified.
+             *
+             * @param okHttpClient the client to share the connections and threads of
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setOkHttpClient(@Nullable OkHttpClient okHttpClient) {
+                this.okHttpClient = okHttpClient;
+                return this;
+            }
+
+            /**
+             * Set the timeouts of the requests of the SDK, it's optional. The default connect
+             * timeout is 5 seconds, the default read timeout is 30 seconds. Promo, checkout and
+             * tracking requests have timeouts of their own, e.g. a promo request is abandoned
+             * after 3 seconds.
+             *
+             * @param connectTimeout the timeout to connect to the Affirm servers
+             * @param readTimeout    the max time between two reads of a response
+             * @param unit           the time unit of both timeouts
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTimeouts(long connectTimeout, long readTimeout,
+                                       @NonNull TimeUnit unit) {
+                this.connectTimeoutMillis = unit.toMillis(connectTimeout);
+                this.readTimeoutMillis = unit.toMillis(readTimeout);
+                return this;
+            }
+
+            /**
+             * Set a listener receiving the network timings of every request of the SDK, it's
+             * optional. It runs on the callback executor once a request completes, with the
+             * time spent in DNS, connection, TLS, request, time to first byte and response
+             * body, and the tag of the request.
+             *
+             * @param listener the listener of the request metrics
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setRequestMetricsListener(@Nullable RequestMetricsListener listener) {
+                this.requestMetricsListener = listener;
+                return this;
+            }
+
+            /**
+             * Add the network timings of a failed request to the network error tracked for it,
+             * it's optional and disabled by default.
+             *
+             * @param trackRequestMetrics true to send the timings along with network errors
+             * @return The same builder, for easy chaining.
+             */
+            public Builder setTrackRequestMetrics(boolean trackRequestMetrics) {
+                this.trackRequestMetrics = trackRequestMetrics;
+                return this;
+            }
+
             /**
              * Construct this builder into a concrete {@code Configuration} instance.
              *
@@ -333,6 +767,44 @@ public final class Affirm {
         }
     }
 
+    /**
+     * Get the checkout ready ahead of time, e.g. when the cart screen opens: keeps a WebView
+     * ready for the checkout screen, and opens the connections to the Affirm hosts. Must be
+     * called from the main thread.
+     *
+     * @param context any context, only the application context is kept
+     */
+    public static void warmUp(@NonNull Context context) {
+        AffirmUtils.requireNonNull(context, "context cannot be null");
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        plugins.restClient().preconnect(AffirmHttpClient.getProtocol() + plugins.baseUrl());
+        // The cached web assets are fetched through the same connection pool
+        plugins.restClient().preconnect(AffirmHttpClient.getProtocol() + plugins.baseJsUrl());
+        CheckoutWebViewPool.prewarm(context);
+    }
+
+    /**
+     * Start creating the checkout before {@link #startCheckout}, e.g. when the cart screen opens
+     * or when the pay button is tapped, so the checkout is ready as soon as the checkout screen
+     * shows up. It is only used by a {@code startCheckout} with an equal checkout and the same
+     * {@code useVCN}. Must be called from the main thread.
+     *
+     * @param checkout checkout object that contains address & shipping info & others...
+     * @param useVCN   Start VCN checkout or not
+     */
+    public static void prepareCheckout(@NonNull Checkout checkout, boolean useVCN) {
+        AffirmUtils.requireNonNull(checkout, "checkout cannot be null");
+        CheckoutPrefetcher.prepare(checkout, useVCN);
+    }
+
+    /**
+     * Cancel the checkout started by {@link #prepareCheckout}, e.g. when the user leaves the cart
+     * screen without paying. Must be called from the main thread.
+     */
+    public static void cancelPreparedCheckout() {
+        CheckoutPrefetcher.cancel();
+    }
+
     /**
      * Start site modal
      *
@@ -499,6 +971,62 @@ public final class Affirm {
         promotionButton.setOnClickListener(onClickListener);
     }
 
+    /**
+     * Create the WebViews used by html styled promotion buttons while the main thread is idle,
+     * e.g. from {@code Application.onCreate}. Only useful if you use {@code htmlStyling}.
+     * Must be called from the main thread.
+     *
+     * @param context any context, only the application context is kept
+     */
+    public static void prewarmPromoWebViews(@NonNull Context context) {
+        AffirmUtils.requireNonNull(context, "context cannot be null");
+        PromotionWebViewPool.prewarm(context, PromotionWebViewPool.MAX_IDLE);
+    }
+
+    /**
+     * Load promo messages ahead of time, e.g. as soon as the product list arrives, so that a
+     * later {@code configureWithAmount} with the same parameters is served from memory. The
+     * styling of the buttons must match the one of the batch.
+     *
+     * @param promoBatch the promos to load
+     */
+    public static void prefetchPromos(@NonNull PromoBatch promoBatch) {
+        AffirmUtils.requireNonNull(promoBatch, "PromoBatch cannot be null");
+        promoBatch.load(new PromoBatch.Callback() {
+            @Override
+            public void onPromoLoaded(@NonNull String key, @NonNull String promo,
+                                      @NonNull String htmlPromo, boolean showPrequal) {
+                AffirmLog.v("Promo prefetched: " + key);
+            }
+
+            @Override
+            public void onPromoFailed(@NonNull String key, @NonNull AffirmException exception) {
+                AffirmLog.w("Failed to prefetch promo: " + key);
+            }
+        });
+    }
+
+    /**
+     * Load promo messages ahead of time for buttons using the default local styling.
+     *
+     * @param promoId  the client's modal id
+     * @param pageType need to use one of "banner, cart, category, homepage, landing,
+     *                 payment, product, search"
+     * @param showCta  whether need to show cta
+     * @param amounts  (Float) eg 112.02 as $112 and ¢2
+     */
+    public static void prefetchPromos(@Nullable String promoId,
+                                      @Nullable PromoPageType pageType,
+                                      boolean showCta,
+                                      @NonNull float... amounts) {
+        AffirmUtils.requireNonNull(amounts, "amounts cannot be null");
+        final PromoBatch.Builder builder = PromoBatch.builder().setShowCta(showCta);
+        for (float amount : amounts) {
+            builder.add(String.valueOf(amount), promoId, pageType, amount);
+        }
+        prefetchPromos(builder.build());
+    }
+
     // Add a blank fragment to handle the lifecycle of the activity
     private static LifeListenerFragment getLifeListenerFragment(Activity activity) {
         final FragmentManager manager = activity.getFragmentManager();
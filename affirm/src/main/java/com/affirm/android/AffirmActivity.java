@@ -22,6 +22,10 @@ abstract class AffirmActivity extends AppCompatActivity implements AffirmWebChro
 
     abstract void onAttached();
 
+    WebView createWebView() {
+        return new AffirmWebView(this);
+    }
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         beforeOnCreate();
@@ -29,7 +33,10 @@ abstract class AffirmActivity extends AppCompatActivity implements AffirmWebChro
 
         setContentView(R.layout.affirm_activity_webview);
         container = getWindow().getDecorView().findViewById(android.R.id.content);
-        webView = findViewById(R.id.webview);
+        webView = createWebView();
+        final ViewGroup webViewContainer = findViewById(R.id.webviewContainer);
+        webViewContainer.addView(webView, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
         progressIndicator = findViewById(R.id.progressIndicator);
 
         initViews();
@@ -39,11 +46,20 @@ abstract class AffirmActivity extends AppCompatActivity implements AffirmWebChro
         onAttached();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The app may be going to the background, don't leave the events of this screen behind
+        AffirmPlugins.get().flushTracker();
+    }
+
     @Override
     protected void onDestroy() {
-        container.removeView(webView);
+        ((ViewGroup) webView.getParent()).removeView(webView);
         webView.removeAllViews();
-        webView.clearCache(true);
+        if (AffirmWebView.isCacheDisabled()) {
+            webView.clearCache(true);
+        }
         webView.destroyDrawingCache();
         webView.clearHistory();
         webView.destroy();
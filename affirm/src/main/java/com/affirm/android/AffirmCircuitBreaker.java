@@ -0,0 +1,200 @@
+package com.affirm.android;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * A circuit breaker per host and kind of request, the tag of the request. After
+ * {@code failureThreshold} consecutive failures the circuit opens, and its requests fail right
+ * away instead of waiting on a degraded server. Once {@code openDurationMillis} has elapsed the
+ * circuit is half open, a single probe request goes through, and closes the circuit if it
+ * succeeds or opens it again if it fails.
+ * <p>
+ * Each kind of request has its own circuit, so e.g. failing promos don't block checkout on the
+ * same host.
+ * <p>
+ * Failures are I/O errors, expired deadlines and 5xx responses, other responses show the server
+ * is answering.
+ */
+final class AffirmCircuitBreaker implements Interceptor {
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_DURATION_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Thrown instead of sending a request while its circuit is open.
+     */
+    static final class CircuitOpenException extends IOException {
+        CircuitOpenException(@NonNull String host, @Nullable String tag) {
+            super("Circuit open for " + describe(host, tag));
+        }
+    }
+
+    interface Listener {
+        void onStateChanged(@NonNull String host,
+                            @Nullable String tag,
+                            @NonNull Affirm.CircuitState state);
+    }
+
+    private static final class Circuit {
+        Affirm.CircuitState state = Affirm.CircuitState.CLOSED;
+        int failures;
+        long openedAt;
+        boolean probing;
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    @Nullable
+    private final Listener listener;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+
+    AffirmCircuitBreaker(int failureThreshold,
+                         long openDurationMillis,
+                         @Nullable Listener listener) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        final Request request = chain.request();
+        final String host = request.url().host();
+        final AffirmHttpRequest affirmRequest = request.tag(AffirmHttpRequest.class);
+        final String tag = affirmRequest != null ? affirmRequest.getTag() : null;
+        if (!allowRequest(host, tag, SystemClock.elapsedRealtime())) {
+            throw new CircuitOpenException(host, tag);
+        }
+
+        final Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            // An expired deadline is a failure, the server was too slow
+            if (AffirmTimeoutPolicy.isCanceledByCaller(chain.call())) {
+                onCanceled(host, tag);
+            } else {
+                onFailure(host, tag, SystemClock.elapsedRealtime());
+            }
+            throw e;
+        }
+
+        if (response.code() >= 500) {
+            onFailure(host, tag, SystemClock.elapsedRealtime());
+        } else {
+            onSuccess(host, tag);
+        }
+        return response;
+    }
+
+    @NonNull
+    private static String key(@NonNull String host, @Nullable String tag) {
+        return tag != null ? host + ' ' + tag : host;
+    }
+
+    @NonNull
+    private static String describe(@NonNull String host, @Nullable String tag) {
+        return tag != null ? host + " (" + tag + ")" : host;
+    }
+
+    /**
+     * @return true if a request to {@code host} with {@code tag} can be sent, false if it should
+     * fail right away
+     */
+    boolean allowRequest(@NonNull String host, @Nullable String tag, long now) {
+        final boolean halfOpened;
+        synchronized (circuits) {
+            final Circuit circuit = circuits.get(key(host, tag));
+            if (circuit == null || circuit.state == Affirm.CircuitState.CLOSED) {
+                return true;
+            }
+            // Only one probe at a time
+            if (circuit.probing) {
+                return false;
+            }
+            if (circuit.state == Affirm.CircuitState.OPEN
+                    && now - circuit.openedAt < openDurationMillis) {
+                return false;
+            }
+            halfOpened = circuit.state == Affirm.CircuitState.OPEN;
+            circuit.state = Affirm.CircuitState.HALF_OPEN;
+            circuit.probing = true;
+        }
+        if (halfOpened) {
+            notifyStateChanged(host, tag, Affirm.CircuitState.HALF_OPEN);
+        }
+        return true;
+    }
+
+    void onSuccess(@NonNull String host, @Nullable String tag) {
+        synchronized (circuits) {
+            final Circuit circuit = circuits.remove(key(host, tag));
+            if (circuit == null || circuit.state == Affirm.CircuitState.CLOSED) {
+                return;
+            }
+        }
+        AffirmLog.d("Circuit closed for " + describe(host, tag));
+        notifyStateChanged(host, tag, Affirm.CircuitState.CLOSED);
+    }
+
+    void onFailure(@NonNull String host, @Nullable String tag, long now) {
+        synchronized (circuits) {
+            final String key = key(host, tag);
+            Circuit circuit = circuits.get(key);
+            if (circuit == null) {
+                circuit = new Circuit();
+                circuits.put(key, circuit);
+            }
+            circuit.failures++;
+            circuit.probing = false;
+            if (circuit.state == Affirm.CircuitState.OPEN
+                    || (circuit.state == Affirm.CircuitState.CLOSED
+                    && circuit.failures < failureThreshold)) {
+                return;
+            }
+            circuit.state = Affirm.CircuitState.OPEN;
+            circuit.openedAt = now;
+        }
+        AffirmLog.w("Circuit open for " + describe(host, tag));
+        notifyStateChanged(host, tag, Affirm.CircuitState.OPEN);
+    }
+
+    // A canceled probe says nothing about the server, let the next request probe instead
+    void onCanceled(@NonNull String host, @Nullable String tag) {
+        synchronized (circuits) {
+            final Circuit circuit = circuits.get(key(host, tag));
+            if (circuit != null) {
+                circuit.probing = false;
+            }
+        }
+    }
+
+    @NonNull
+    Affirm.CircuitState state(@NonNull String host, @Nullable String tag) {
+        synchronized (circuits) {
+            final Circuit circuit = circuits.get(key(host, tag));
+            return circuit != null ? circuit.state : Affirm.CircuitState.CLOSED;
+        }
+    }
+
+    private void notifyStateChanged(@NonNull String host,
+                                    @Nullable String tag,
+                                    @NonNull Affirm.CircuitState state) {
+        if (listener != null) {
+            listener.onStateChanged(host, tag, state);
+        }
+    }
+}
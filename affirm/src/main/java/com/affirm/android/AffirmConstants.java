@@ -27,6 +27,8 @@ public final class AffirmConstants {
     static final String TAG_CHECKOUT = "CHECKOUT";
     static final String TAG_VCN_CHECKOUT = "VCN_CHECKOUT";
     static final String TAG_TRACKER = "TAG_TRACKER";
+    static final String TAG_PRECONNECT = "PRECONNECT";
+    static final String TAG_WEB_ASSET = "WEB_ASSET";
 
     static final String HTTPS_PROTOCOL = "https://";
     static final String HTTP_PROTOCOL = "http://";
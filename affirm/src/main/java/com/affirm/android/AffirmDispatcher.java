@@ -0,0 +1,74 @@
+package com.affirm.android;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Delivers the results of the requests. Results driving the views of the SDK always go to the
+ * main thread, results for the merchant callbacks go to the configured callback executor, which
+ * is the main thread by default.
+ */
+final class AffirmDispatcher {
+
+    private final Executor mainExecutor;
+    private final Executor callbackExecutor;
+
+    AffirmDispatcher(@Nullable Executor callbackExecutor) {
+        this(new MainThreadExecutor(), callbackExecutor);
+    }
+
+    AffirmDispatcher(@NonNull Executor mainExecutor, @Nullable Executor callbackExecutor) {
+        this.mainExecutor = mainExecutor;
+        this.callbackExecutor = callbackExecutor != null ? callbackExecutor : mainExecutor;
+    }
+
+    /**
+     * Run {@code runnable} on the main thread, later.
+     */
+    void postToMain(@NonNull Runnable runnable) {
+        mainExecutor.execute(runnable);
+    }
+
+    /**
+     * Run {@code runnable} on the main thread, right away if this is the main thread.
+     */
+    void runOnMain(@NonNull Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            postToMain(runnable);
+        }
+    }
+
+    /**
+     * Run a merchant callback on the callback executor.
+     */
+    void dispatchCallback(@NonNull Runnable runnable) {
+        callbackExecutor.execute(runnable);
+    }
+
+    /**
+     * Posts to the main looper with asynchronous messages, so results are not held back behind
+     * the sync barrier of a pending traversal.
+     */
+    static final class MainThreadExecutor implements Executor {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            final Message message = Message.obtain(handler, command);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
+                message.setAsynchronous(true);
+            }
+            handler.sendMessage(message);
+        }
+    }
+}
@@ -1,15 +1,66 @@
 package com.affirm.android;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Utf8;
+
 class AffirmHttpBody {
 
+    /**
+     * Writes the content, without building it as a String first. It is called once, the encoded
+     * bytes are kept for the Content-Length and for the retries of the request.
+     */
+    interface Producer {
+        void writeTo(@NonNull BufferedSink sink) throws IOException;
+    }
+
+    /**
+     * Writes text content, encoded as UTF-8.
+     */
+    interface TextProducer {
+        void writeTo(@NonNull Writer writer) throws IOException;
+    }
+
     private final String contentType;
+    @Nullable
     private final String content;
+    @Nullable
+    private final Producer producer;
+    // The bytes written by the producer, guarded by this
+    @Nullable
+    private Buffer encoded;
 
-    AffirmHttpBody(String contentType, String content) {
+    AffirmHttpBody(String contentType, @NonNull String content) {
         this.contentType = contentType;
         this.content = content;
+        this.producer = null;
+    }
+
+    AffirmHttpBody(String contentType, @NonNull Producer producer) {
+        this.contentType = contentType;
+        this.content = null;
+        this.producer = producer;
+    }
+
+    AffirmHttpBody(String contentType, @NonNull TextProducer producer) {
+        this(contentType, (BufferedSink sink) -> {
+            final Writer writer = new OutputStreamWriter(sink.outputStream(),
+                    StandardCharsets.UTF_8);
+            producer.writeTo(writer);
+            // Flush the encoder, the sink stays open
+            writer.flush();
+        });
     }
 
+    @Nullable
     String getContent() {
         return content;
     }
@@ -17,4 +68,31 @@ class AffirmHttpBody {
     String getContentType() {
         return contentType;
     }
+
+    /**
+     * @return the size of the encoded content, so the body is never sent chunked
+     */
+    long contentLength() throws IOException {
+        return content != null ? Utf8.size(content) : encoded().size();
+    }
+
+    void writeTo(@NonNull BufferedSink sink) throws IOException {
+        if (content != null) {
+            sink.writeUtf8(content);
+        } else {
+            final Buffer buffer = encoded();
+            // A copy sharing the segments, the encoded bytes are kept for the next write
+            sink.write(buffer.clone(), buffer.size());
+        }
+    }
+
+    @NonNull
+    private synchronized Buffer encoded() throws IOException {
+        if (encoded == null) {
+            final Buffer buffer = new Buffer();
+            producer.writeTo(buffer);
+            encoded = buffer;
+        }
+        return encoded;
+    }
 }
@@ -8,21 +8,33 @@ import com.affirm.android.exception.AffirmException;
 import com.affirm.android.exception.InvalidRequestException;
 import com.affirm.android.exception.PermissionException;
 import com.affirm.android.model.AffirmError;
+import com.google.gson.JsonParseException;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
 
 import static com.affirm.android.AffirmConstants.HTTP;
 import static com.affirm.android.AffirmConstants.HTTPS_PROTOCOL;
+import static com.affirm.android.AffirmConstants.TAG_PRECONNECT;
 import static com.affirm.android.AffirmConstants.X_AFFIRM_REQUEST_ID;
 import static com.affirm.android.AffirmTracker.TrackingEvent.NETWORK_ERROR;
 import static com.affirm.android.AffirmTracker.TrackingLevel.ERROR;
@@ -44,6 +56,11 @@ final class AffirmHttpClient {
         return new AffirmHttpClient(builder);
     }
 
+    @NonNull
+    OkHttpClient okHttpClient() {
+        return okHttpClient;
+    }
+
     static AffirmException handleAPIError(
             @NonNull AffirmError affirmError,
             int responseCode,
@@ -113,8 +130,70 @@ final class AffirmHttpClient {
         return new APIException("Error getting exception from response", null);
     }
 
+    /**
+     * Decode a json response body straight from its source, without reading it into a string
+     * first. The body is closed once decoded.
+     *
+     * @param maxBytes the decoding fails once more bytes than this have been read
+     * @return the decoded body, or null if the body is empty
+     * @throws IOException if the body could not be read or decoded, or is too large
+     */
+    @Nullable
+    static <T> T parseResponseBody(
+            @NonNull ResponseBody responseBody,
+            @NonNull Class<T> type,
+            long maxBytes
+    ) throws IOException {
+        try (ResponseBody body = responseBody) {
+            if (body.contentLength() > maxBytes) {
+                throw new IOException("Response body exceeds " + maxBytes + " bytes");
+            }
+
+            final MediaType contentType = body.contentType();
+            final Charset charset = contentType != null
+                    ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+            final BufferedSource source =
+                    Okio.buffer(new SizeLimitedSource(body.source(), maxBytes));
+            final Reader reader = new InputStreamReader(source.inputStream(), charset);
+
+            return AffirmPlugins.get().gson().fromJson(reader, type);
+        } catch (JsonParseException e) {
+            // Gson reports read failures as parse exceptions
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to decode the response body", e);
+        }
+    }
+
+    /**
+     * Open a connection to the host of {@code url} ahead of the first real request. The
+     * connection is then kept alive in the connection pool.
+     */
+    void preconnect(@NonNull String url) {
+        getCallForRequest(
+                new AffirmHttpRequest.Builder()
+                        .setUrl(url)
+                        .setMethod(AffirmHttpRequest.Method.HEAD)
+                        .setTag(TAG_PRECONNECT)
+                        .build()
+        ).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                response.close();
+            }
+
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                AffirmLog.v("Failed to preconnect to " + url + ": " + e.toString());
+            }
+        });
+    }
+
     Call getCallForRequest(AffirmHttpRequest request) {
-        return okHttpClient.newCall(getRequest(request));
+        final Call call = okHttpClient.newCall(getRequest(request));
+        AffirmTimeoutPolicy.applyDeadline(call, request);
+        return call;
     }
 
     private Request getRequest(AffirmHttpRequest request) {
@@ -125,6 +204,9 @@ final class AffirmHttpClient {
             case GET:
                 okHttpRequestBuilder.get();
                 break;
+            case HEAD:
+                okHttpRequestBuilder.head();
+                break;
             case DELETE:
             case POST:
             case PUT:
@@ -136,6 +218,11 @@ final class AffirmHttpClient {
         // Set request url
         okHttpRequestBuilder.url(request.getUrl());
 
+        // Set request headers
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            okHttpRequestBuilder.header(header.getKey(), header.getValue());
+        }
+
         // Set request body
         AffirmHttpBody body = request.getBody();
         AffirmOkHttpRequestBody okHttpRequestBody = null;
@@ -145,6 +232,11 @@ final class AffirmHttpClient {
 
         // set request tag
         okHttpRequestBuilder.tag(request.getTag());
+        okHttpRequestBuilder.tag(AffirmHttpRequest.class, request);
+        okHttpRequestBuilder.tag(AffirmTimeoutPolicy.Cancellation.class,
+                new AffirmTimeoutPolicy.Cancellation());
+        okHttpRequestBuilder.tag(AffirmNetworkTimings.Slot.class,
+                new AffirmNetworkTimings.Slot(request.getTag()));
 
         if (okHttpRequestBody != null) {
             switch (method) {
@@ -166,21 +258,15 @@ final class AffirmHttpClient {
 
     private static class AffirmOkHttpRequestBody extends RequestBody {
 
-        private AffirmHttpBody body;
-        private byte[] content;
-        private int offset;
-        private int byteCount;
+        private final AffirmHttpBody body;
 
         AffirmOkHttpRequestBody(AffirmHttpBody body) {
             this.body = body;
-            this.content = body.getContent().getBytes(StandardCharsets.UTF_8);
-            this.offset = 0;
-            this.byteCount = content.length;
         }
 
         @Override
-        public long contentLength() {
-            return byteCount;
+        public long contentLength() throws IOException {
+            return body.contentLength();
         }
 
         @Override
@@ -191,7 +277,30 @@ final class AffirmHttpClient {
 
         @Override
         public void writeTo(@NonNull BufferedSink sink) throws IOException {
-            sink.write(content, offset, byteCount);
+            body.writeTo(sink);
+        }
+    }
+
+    private static class SizeLimitedSource extends ForwardingSource {
+
+        private final long maxBytes;
+        private long totalBytes;
+
+        SizeLimitedSource(Source delegate, long maxBytes) {
+            super(delegate);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+            final long read = super.read(sink, byteCount);
+            if (read != -1) {
+                totalBytes += read;
+                if (totalBytes > maxBytes) {
+                    throw new IOException("Response body exceeds " + maxBytes + " bytes");
+                }
+            }
+            return read;
         }
     }
 
@@ -1,16 +1,24 @@
 package com.affirm.android;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 final class AffirmHttpRequest {
     private final String url;
     private final Method method;
     private final AffirmHttpBody body;
     private final String tag;
+    private final Map<String, String> headers;
+    private final boolean idempotent;
 
     private AffirmHttpRequest(Builder builder) {
         url = builder.mUrl;
         method = builder.mMethod;
         body = builder.mBody;
         tag = builder.mTag;
+        headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.mHeaders));
+        idempotent = builder.mIdempotent;
     }
 
     String getUrl() {
@@ -29,8 +37,19 @@ final class AffirmHttpRequest {
         return tag;
     }
 
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return true if sending the request more than once has the same effect as sending it once
+     */
+    boolean isIdempotent() {
+        return idempotent;
+    }
+
     enum Method {
-        GET, POST, PUT, DELETE
+        GET, HEAD, POST, PUT, DELETE
     }
 
     static final class Builder {
@@ -39,6 +58,8 @@ final class AffirmHttpRequest {
         private Method mMethod;
         private AffirmHttpBody mBody;
         private String mTag;
+        private final Map<String, String> mHeaders = new LinkedHashMap<>();
+        private boolean mIdempotent;
 
         Builder() {
         }
@@ -64,6 +85,17 @@ final class AffirmHttpRequest {
             return this;
         }
 
+        Builder setHeader(String name, String value) {
+            mHeaders.put(name, value);
+            return this;
+        }
+
+        // GET and HEAD requests are always idempotent, other requests must opt in to be retried
+        Builder setIdempotent(boolean idempotent) {
+            mIdempotent = idempotent;
+            return this;
+        }
+
         AffirmHttpRequest build() {
             return new AffirmHttpRequest(this);
         }
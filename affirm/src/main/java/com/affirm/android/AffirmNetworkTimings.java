@@ -0,0 +1,374 @@
+package com.affirm.android;
+
+import com.affirm.android.model.RequestMetrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Records where the time of one call goes, from the OkHttp events of the call. A new instance is
+ * created for each call and published in the {@link Slot} tag of its request, so the timings
+ * recorded so far can be read while handling the response, e.g. to add them to a tracking event.
+ * Every event is also forwarded to the event listener of the app client.
+ * <p>
+ * A call retried by the SDK goes through several attempts. The phases reported are those of the
+ * last attempt, the total covers the whole call, every attempt and the backoff between them
+ * included.
+ * <p>
+ * {@code callStart} is delivered on the thread enqueuing the call, the later events on the
+ * dispatcher thread running it, and the timings are read from yet another thread, so they are
+ * recorded under the lock of the instance. The listeners are called outside of it.
+ */
+final class AffirmNetworkTimings extends EventListener {
+
+    interface Listener {
+        void onRequestMetrics(@NonNull RequestMetrics metrics);
+    }
+
+    /**
+     * The request tag holding the timings of the latest call of the request.
+     */
+    static final class Slot {
+        @Nullable
+        final String tag;
+        @Nullable
+        volatile AffirmNetworkTimings timings;
+
+        Slot(@Nullable String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Creates the timings of each call of a request with a {@link Slot}, and reports them once
+     * the call ends. The events of every call also go to the listeners of {@code delegate}.
+     */
+    static final class Factory implements EventListener.Factory {
+
+        private final EventListener.Factory delegate;
+        @Nullable
+        private final Listener listener;
+
+        Factory(@NonNull EventListener.Factory delegate, @Nullable Listener listener) {
+            this.delegate = delegate;
+            this.listener = listener;
+        }
+
+        @NonNull
+        @Override
+        public EventListener create(@NonNull Call call) {
+            final EventListener delegateListener = delegate.create(call);
+            final Slot slot = call.request().tag(Slot.class);
+            if (slot == null) {
+                return delegateListener;
+            }
+            final AffirmNetworkTimings timings =
+                    new AffirmNetworkTimings(slot.tag, listener, delegateListener);
+            slot.timings = timings;
+            return timings;
+        }
+    }
+
+    /**
+     * @return the timings of the latest call of {@code request}, null if it has none
+     */
+    @Nullable
+    static AffirmNetworkTimings of(@NonNull Request request) {
+        final Slot slot = request.tag(Slot.class);
+        return slot != null ? slot.timings : null;
+    }
+
+    @Nullable
+    private final String tag;
+    @Nullable
+    private final Listener listener;
+    private final EventListener delegate;
+
+    // Guarded by this
+    private String url;
+    private String method;
+    private int statusCode = -1;
+    private boolean failed;
+    // True from the first event of an attempt until it ends
+    private boolean attemptStarted;
+
+    // System.nanoTime() of each event, 0 until it happens
+    private long callStart;
+    private long dnsStart;
+    private long dnsEnd;
+    private long connectStart;
+    private long connectEnd;
+    private long secureConnectStart;
+    private long secureConnectEnd;
+    private long requestStart;
+    private long requestEnd;
+    private long responseStart;
+    private long responseBodyStart;
+    private long responseBodyEnd;
+    private long callEnd;
+
+    AffirmNetworkTimings(@Nullable String tag,
+                         @Nullable Listener listener,
+                         @NonNull EventListener delegate) {
+        this.tag = tag;
+        this.listener = listener;
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the timings recorded so far, the phases still running are reported as -1
+     */
+    @NonNull
+    synchronized RequestMetrics snapshot() {
+        return RequestMetrics.builder()
+                .setTag(tag)
+                .setUrl(url != null ? url : "")
+                .setMethod(method != null ? method : "")
+                .setStatusCode(statusCode)
+                .setFailed(failed)
+                .setDnsMillis(millis(dnsStart, dnsEnd))
+                .setConnectMillis(millis(connectStart, connectEnd))
+                .setTlsMillis(millis(secureConnectStart, secureConnectEnd))
+                .setRequestMillis(millis(requestStart, requestEnd))
+                .setTtfbMillis(millis(requestEnd, responseStart))
+                .setResponseBodyMillis(millis(responseBodyStart, responseBodyEnd))
+                .setTotalMillis(millis(callStart, callEnd != 0 ? callEnd : System.nanoTime()))
+                .build();
+    }
+
+    // The events of an attempt replace those of the previous one, called holding the lock
+    private void startAttempt() {
+        if (attemptStarted) {
+            return;
+        }
+        attemptStarted = true;
+        statusCode = -1;
+        dnsStart = 0;
+        dnsEnd = 0;
+        connectStart = 0;
+        connectEnd = 0;
+        secureConnectStart = 0;
+        secureConnectEnd = 0;
+        requestStart = 0;
+        requestEnd = 0;
+        responseStart = 0;
+        responseBodyStart = 0;
+        responseBodyEnd = 0;
+    }
+
+    private synchronized void endAttempt() {
+        attemptStarted = false;
+    }
+
+    private static long millis(long startNanos, long endNanos) {
+        if (startNanos == 0 || endNanos == 0 || endNanos < startNanos) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+
+    @Override
+    public void callStart(@NonNull Call call) {
+        synchronized (this) {
+            callStart = System.nanoTime();
+            url = call.request().url().toString();
+            method = call.request().method();
+        }
+        delegate.callStart(call);
+    }
+
+    @Override
+    public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+        synchronized (this) {
+            startAttempt();
+            dnsStart = System.nanoTime();
+        }
+        delegate.dnsStart(call, domainName);
+    }
+
+    @Override
+    public void dnsEnd(@NonNull Call call,
+                       @NonNull String domainName,
+                       @NonNull List<InetAddress> inetAddressList) {
+        synchronized (this) {
+            dnsEnd = System.nanoTime();
+        }
+        delegate.dnsEnd(call, domainName, inetAddressList);
+    }
+
+    @Override
+    public void connectStart(@NonNull Call call,
+                             @NonNull InetSocketAddress inetSocketAddress,
+                             @NonNull Proxy proxy) {
+        synchronized (this) {
+            startAttempt();
+            connectStart = System.nanoTime();
+        }
+        delegate.connectStart(call, inetSocketAddress, proxy);
+    }
+
+    @Override
+    public void secureConnectStart(@NonNull Call call) {
+        synchronized (this) {
+            secureConnectStart = System.nanoTime();
+        }
+        delegate.secureConnectStart(call);
+    }
+
+    @Override
+    public void secureConnectEnd(@NonNull Call call, @Nullable Handshake handshake) {
+        synchronized (this) {
+            secureConnectEnd = System.nanoTime();
+        }
+        delegate.secureConnectEnd(call, handshake);
+    }
+
+    @Override
+    public void connectEnd(@NonNull Call call,
+                           @NonNull InetSocketAddress inetSocketAddress,
+                           @NonNull Proxy proxy,
+                           @Nullable Protocol protocol) {
+        synchronized (this) {
+            connectEnd = System.nanoTime();
+        }
+        delegate.connectEnd(call, inetSocketAddress, proxy, protocol);
+    }
+
+    @Override
+    public void connectFailed(@NonNull Call call,
+                              @NonNull InetSocketAddress inetSocketAddress,
+                              @NonNull Proxy proxy,
+                              @Nullable Protocol protocol,
+                              @NonNull IOException ioe) {
+        // OkHttp tries the next route within the same attempt
+        delegate.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+    }
+
+    @Override
+    public void connectionAcquired(@NonNull Call call, @NonNull Connection connection) {
+        synchronized (this) {
+            startAttempt();
+        }
+        delegate.connectionAcquired(call, connection);
+    }
+
+    @Override
+    public void connectionReleased(@NonNull Call call, @NonNull Connection connection) {
+        endAttempt();
+        delegate.connectionReleased(call, connection);
+    }
+
+    @Override
+    public void requestHeadersStart(@NonNull Call call) {
+        synchronized (this) {
+            startAttempt();
+            requestStart = System.nanoTime();
+        }
+        delegate.requestHeadersStart(call);
+    }
+
+    @Override
+    public void requestHeadersEnd(@NonNull Call call, @NonNull Request request) {
+        synchronized (this) {
+            requestEnd = System.nanoTime();
+        }
+        delegate.requestHeadersEnd(call, request);
+    }
+
+    @Override
+    public void requestBodyStart(@NonNull Call call) {
+        delegate.requestBodyStart(call);
+    }
+
+    @Override
+    public void requestBodyEnd(@NonNull Call call, long byteCount) {
+        synchronized (this) {
+            requestEnd = System.nanoTime();
+        }
+        delegate.requestBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void requestFailed(@NonNull Call call, @NonNull IOException ioe) {
+        endAttempt();
+        delegate.requestFailed(call, ioe);
+    }
+
+    @Override
+    public void responseHeadersStart(@NonNull Call call) {
+        synchronized (this) {
+            responseStart = System.nanoTime();
+        }
+        delegate.responseHeadersStart(call);
+    }
+
+    @Override
+    public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+        synchronized (this) {
+            statusCode = response.code();
+        }
+        delegate.responseHeadersEnd(call, response);
+    }
+
+    @Override
+    public void responseBodyStart(@NonNull Call call) {
+        synchronized (this) {
+            responseBodyStart = System.nanoTime();
+        }
+        delegate.responseBodyStart(call);
+    }
+
+    @Override
+    public void responseBodyEnd(@NonNull Call call, long byteCount) {
+        synchronized (this) {
+            responseBodyEnd = System.nanoTime();
+        }
+        delegate.responseBodyEnd(call, byteCount);
+    }
+
+    @Override
+    public void responseFailed(@NonNull Call call, @NonNull IOException ioe) {
+        endAttempt();
+        delegate.responseFailed(call, ioe);
+    }
+
+    @Override
+    public void callEnd(@NonNull Call call) {
+        synchronized (this) {
+            callEnd = System.nanoTime();
+        }
+        report();
+        delegate.callEnd(call);
+    }
+
+    @Override
+    public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+        synchronized (this) {
+            callEnd = System.nanoTime();
+            failed = true;
+        }
+        report();
+        delegate.callFailed(call, ioe);
+    }
+
+    private void report() {
+        if (listener != null) {
+            listener.onRequestMetrics(snapshot());
+        }
+    }
+}
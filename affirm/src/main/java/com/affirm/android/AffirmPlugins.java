@@ -1,25 +1,47 @@
 package com.affirm.android;
 
+import android.content.Context;
 import android.webkit.CookieManager;
 
 import com.affirm.android.model.AffirmAdapterFactory;
+import com.affirm.android.model.RequestMetrics;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.EventListener;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 
 class AffirmPlugins {
 
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
     private static final Object LOCK = new Object();
-    private static AffirmPlugins instance;
+    // Written under the lock, read without it
+    private static volatile AffirmPlugins instance;
     private final Affirm.Configuration configuration;
 
-    private AffirmHttpClient restClient;
-    private Gson gson;
+    // Created on first use with double checked locking, so reads never take the lock
+    private volatile AffirmHttpClient restClient;
+    private volatile AffirmTrackerQueue trackerQueue;
+    private volatile AffirmTrackerThrottle trackerThrottle;
+    private volatile PromoCache promoCache;
+    private volatile PromoFetcher promoFetcher;
+    private volatile WebAssetCache webAssetCache;
+    private volatile AffirmDispatcher dispatcher;
+
+    // Gson doesn't depend on the configuration, it is created once per process on first use
+    private static final class GsonHolder {
+        static final Gson GSON = new GsonBuilder()
+                .registerTypeAdapterFactory(AffirmAdapterFactory.create())
+                .create();
+    }
 
     AffirmPlugins(@NonNull Affirm.Configuration configuration) {
         this.configuration = configuration;
@@ -39,9 +61,7 @@ class AffirmPlugins {
     }
 
     public static AffirmPlugins get() {
-        synchronized (LOCK) {
-            return instance;
-        }
+        return instance;
     }
 
     static void reset() {
@@ -66,6 +86,18 @@ class AffirmPlugins {
         return configuration.environment.name();
     }
 
+    int promoAmountBucketCents() {
+        return configuration.promoAmountBucketCents;
+    }
+
+    boolean trackRequestMetrics() {
+        return configuration.trackRequestMetrics;
+    }
+
+    Affirm.WebViewCachePolicy webViewCachePolicy() {
+        return configuration.webViewCachePolicy;
+    }
+
     String baseUrl() {
         return configuration.environment.baseUrl;
     }
@@ -78,39 +110,210 @@ class AffirmPlugins {
         return configuration.environment.trackerBaseUrl;
     }
 
-    synchronized Gson gson() {
-        if (gson == null) {
-            gson =
-                    new GsonBuilder()
-                            .registerTypeAdapterFactory(AffirmAdapterFactory.create()).create();
+    Gson gson() {
+        return GsonHolder.GSON;
+    }
+
+    // Doesn't create the queue, nothing was tracked yet if there is none
+    void flushTracker() {
+        final AffirmTrackerQueue queue = trackerQueue;
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
+    AffirmTrackerQueue trackerQueue() {
+        AffirmTrackerQueue result = trackerQueue;
+        if (result == null) {
+            synchronized (this) {
+                result = trackerQueue;
+                if (result == null) {
+                    result = new AffirmTrackerQueue(
+                            configuration.trackerBatchSize,
+                            configuration.trackerFlushIntervalMillis,
+                            configuration.trackerCacheDir
+                    );
+                    trackerQueue = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    AffirmTrackerThrottle trackerThrottle() {
+        AffirmTrackerThrottle result = trackerThrottle;
+        if (result == null) {
+            synchronized (this) {
+                result = trackerThrottle;
+                if (result == null) {
+                    result = new AffirmTrackerThrottle(
+                            configuration.trackerSampleRate,
+                            configuration.trackerMaxEventsPerMinute,
+                            configuration.trackerDuplicateWindowMillis,
+                            new Random()
+                    );
+                    trackerThrottle = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    PromoCache promoCache() {
+        PromoCache result = promoCache;
+        if (result == null) {
+            synchronized (this) {
+                result = promoCache;
+                if (result == null) {
+                    result = new PromoCache(
+                            configuration.promoCacheSize,
+                            configuration.promoCacheTtlMillis
+                    );
+                    promoCache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    PromoFetcher promoFetcher() {
+        PromoFetcher result = promoFetcher;
+        if (result == null) {
+            synchronized (this) {
+                result = promoFetcher;
+                if (result == null) {
+                    result = new PromoFetcher();
+                    promoFetcher = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Doesn't create the cache, the web views create it on the main thread
+    @Nullable
+    WebAssetCache peekWebAssetCache() {
+        return webAssetCache;
+    }
+
+    WebAssetCache webAssetCache(@NonNull Context context) {
+        WebAssetCache result = webAssetCache;
+        if (result == null) {
+            synchronized (this) {
+                result = webAssetCache;
+                if (result == null) {
+                    result = new WebAssetCache(
+                            context.getApplicationContext().getCacheDir(),
+                            baseJsUrl(),
+                            WebAssetCache.DEFAULT_MAX_BYTES,
+                            createPlainClient()
+                    );
+                    webAssetCache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    AffirmDispatcher dispatcher() {
+        AffirmDispatcher result = dispatcher;
+        if (result == null) {
+            synchronized (this) {
+                result = dispatcher;
+                if (result == null) {
+                    result = new AffirmDispatcher(configuration.callbackExecutor);
+                    dispatcher = result;
+                }
+            }
         }
-        return gson;
-    }
-
-    synchronized AffirmHttpClient restClient() {
-        if (restClient == null) {
-            OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
-            //add it as the first interceptor
-            clientBuilder.interceptors().add(0, chain -> {
-                final Request.Builder builder = chain.request().newBuilder();
-                builder.addHeader("Accept", "application/json");
-                builder.addHeader("Content-Type", "application/json");
-                builder.addHeader("Affirm-User-Agent", "Affirm-Android-SDK");
-                builder.addHeader("Affirm-User-Agent-Version", BuildConfig.VERSION_NAME);
-
-                CookieManager cookieManager = CookieManager.getInstance();
-                String cookie = cookieManager
-                        .getCookie(AffirmConstants.HTTPS_PROTOCOL + baseUrl());
-                if (cookie != null) {
-                    builder.addHeader("Cookie", cookie);
+        return result;
+    }
+
+    AffirmHttpClient restClient() {
+        AffirmHttpClient result = restClient;
+        if (result == null) {
+            synchronized (this) {
+                result = restClient;
+                if (result == null) {
+                    result = createRestClient();
+                    restClient = result;
                 }
-                return chain.proceed(builder.build());
-            });
-            clientBuilder.connectTimeout(5, TimeUnit.SECONDS);
-            clientBuilder.readTimeout(30, TimeUnit.SECONDS);
-            clientBuilder.followRedirects(false);
-            restClient = AffirmHttpClient.createClient(clientBuilder);
+            }
+        }
+        return result;
+    }
+
+    private void notifyCircuitStateChanged(@NonNull String host,
+                                           @Nullable String tag,
+                                           @NonNull Affirm.CircuitState state) {
+        final Affirm.CircuitBreakerListener listener = configuration.circuitBreakerListener;
+        if (listener != null) {
+            dispatcher().dispatchCallback(() -> listener.onCircuitStateChanged(host, tag, state));
+        }
+    }
+
+    private void notifyRequestMetrics(@NonNull RequestMetrics metrics) {
+        final Affirm.RequestMetricsListener listener = configuration.requestMetricsListener;
+        if (listener != null) {
+            dispatcher().dispatchCallback(() -> listener.onRequestMetrics(metrics));
+        }
+    }
+
+    // For the requests outside of the Affirm API, e.g. to the CDN. Shares the pools and threads
+    // of the SDK client, without its headers, cookies, retries and circuit breaker
+    @NonNull
+    OkHttpClient createPlainClient() {
+        if (configuration.okHttpClient != null) {
+            return configuration.okHttpClient;
+        }
+        final OkHttpClient.Builder clientBuilder = restClient().okHttpClient().newBuilder();
+        clientBuilder.interceptors().clear();
+        clientBuilder.followRedirects(true);
+        clientBuilder.eventListenerFactory(EventListener.factory(EventListener.NONE));
+        return clientBuilder.build();
+    }
+
+    private AffirmHttpClient createRestClient() {
+        // Derived from the client of the app if there is one, to share its pools and threads
+        OkHttpClient.Builder clientBuilder = configuration.okHttpClient != null
+                ? configuration.okHttpClient.newBuilder()
+                : new OkHttpClient.Builder();
+        //add it as the first interceptor
+        clientBuilder.interceptors().add(0, chain -> {
+            final Request.Builder builder = chain.request().newBuilder();
+            builder.addHeader("Accept", "application/json");
+            builder.addHeader("Content-Type", "application/json");
+            builder.addHeader("Affirm-User-Agent", "Affirm-Android-SDK");
+            builder.addHeader("Affirm-User-Agent-Version", BuildConfig.VERSION_NAME);
+
+            CookieManager cookieManager = CookieManager.getInstance();
+            String cookie = cookieManager
+                    .getCookie(AffirmConstants.HTTPS_PROTOCOL + baseUrl());
+            if (cookie != null) {
+                builder.addHeader("Cookie", cookie);
+            }
+            return chain.proceed(builder.build());
+        });
+        clientBuilder.addInterceptor(new AffirmTimeoutPolicy());
+        // Outside the retries, so a request retried before failing counts as one failure
+        clientBuilder.addInterceptor(new AffirmCircuitBreaker(
+                configuration.circuitFailureThreshold,
+                configuration.circuitOpenDurationMillis,
+                this::notifyCircuitStateChanged
+        ));
+        clientBuilder.addInterceptor(
+                new AffirmRetryInterceptor(configuration.maxRequestAttempts));
+        clientBuilder.connectTimeout(configuration.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        clientBuilder.readTimeout(configuration.readTimeoutMillis, TimeUnit.MILLISECONDS);
+        clientBuilder.followRedirects(false);
+        // Wraps the event listener of the app client, which still gets every event
+        if (configuration.requestMetricsListener != null || configuration.trackRequestMetrics) {
+            final EventListener.Factory appFactory = configuration.okHttpClient != null
+                    ? configuration.okHttpClient.eventListenerFactory()
+                    : EventListener.factory(EventListener.NONE);
+            clientBuilder.eventListenerFactory(
+                    new AffirmNetworkTimings.Factory(appFactory, this::notifyRequestMetrics));
         }
-        return restClient;
+        return AffirmHttpClient.createClient(clientBuilder);
     }
 }
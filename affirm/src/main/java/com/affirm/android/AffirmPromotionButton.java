@@ -15,6 +15,8 @@ import static com.affirm.android.AffirmLogoType.AFFIRM_DISPLAY_TYPE_LOGO;
 public class AffirmPromotionButton extends FrameLayout {
 
     private boolean htmlStyling;
+    private boolean nativeHtmlStyling;
+    private String nativeCss;
     private String message;
 
     private PromotionButton promotionButton;
@@ -25,6 +27,8 @@ public class AffirmPromotionButton extends FrameLayout {
 
     private String remoteCssUrl;
 
+    private OnClickListener onClickListener;
+
     public AffirmPromotionButton(@NonNull Context context) {
         this(context, null);
     }
@@ -61,6 +65,9 @@ public class AffirmPromotionButton extends FrameLayout {
         htmlStyling = typedArray.getBoolean(R.styleable.AffirmPromotionButton_htmlStyling,
                 false);
 
+        nativeHtmlStyling =
+                typedArray.getBoolean(R.styleable.AffirmPromotionButton_nativeHtmlStyling, false);
+
         affirmLogoType = AffirmLogoType.getAffirmLogoType(affirmLogoTypeOrdinal);
         affirmColor = AffirmColor.getAffirmColor(affirmColorOrdinal);
 
@@ -70,15 +77,24 @@ public class AffirmPromotionButton extends FrameLayout {
         promotionButton.setAffirmTextSize(affirmTextSize);
         promotionButton.setAffirmColor(affirmColor);
         promotionButton.setAffirmLogoType(affirmLogoType);
-
-        promotionWebView = new PromotionWebView(context);
-        promotionWebView.setBackgroundColor(getResources().getColor(android.R.color.transparent));
     }
 
     protected void setLabel(@NonNull String text) {
         this.message = text;
         removeAllViews();
-        if (htmlStyling) {
+        if (htmlStyling && nativeHtmlStyling) {
+            addView(promotionButton);
+            promotionButton.setText(promotionButton.updateHtmlSpan(text, nativeCss));
+        } else if (htmlStyling) {
+            // The WebView is only needed for html styling, borrow it from the pool. Only while
+            // attached, onDetachedFromWindow gives it back and onAttachedToWindow sets the label
+            if (!isAttachedToWindow()) {
+                return;
+            }
+            if (promotionWebView == null) {
+                promotionWebView = PromotionWebViewPool.acquire(getContext());
+                promotionWebView.setWebViewClickListener(onClickListener);
+            }
             addView(promotionWebView);
             promotionWebView.loadData(text, remoteCssUrl);
         } else {
@@ -114,9 +130,23 @@ public class AffirmPromotionButton extends FrameLayout {
      */
     public void configWithHtmlStyling(boolean htmlStyling, @Nullable String remoteCssUrl) {
         this.htmlStyling = htmlStyling;
+        this.nativeHtmlStyling = false;
         this.remoteCssUrl = remoteCssUrl;
     }
 
+    /**
+     * Display the html promo message in html style, rendered natively instead of in a WebView.
+     * Only the color, font-weight and font-style of simple class selectors are supported, like
+     * in remote_promo.css.
+     * @param css Set if you want to use custom css, e.g. the content of remote_promo.css.
+     *            If not, just pass null
+     */
+    public void configWithNativeHtmlStyling(@Nullable String css) {
+        this.htmlStyling = true;
+        this.nativeHtmlStyling = true;
+        this.nativeCss = css;
+    }
+
     public void configWithLocalStyling(@NonNull AffirmColor affirmColor,
                                        @NonNull AffirmLogoType affirmLogoType) {
         this.affirmColor = affirmColor;
@@ -140,9 +170,29 @@ public class AffirmPromotionButton extends FrameLayout {
     @Override
     public void setOnClickListener(@Nullable OnClickListener l) {
         super.setOnClickListener(l);
+        this.onClickListener = l;
 
-        if (htmlStyling) {
+        if (promotionWebView != null) {
             promotionWebView.setWebViewClickListener(l);
         }
     }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        if (htmlStyling && !nativeHtmlStyling && promotionWebView == null && !isEmpty()) {
+            setLabel(message);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        if (promotionWebView != null) {
+            PromotionWebViewPool.release(promotionWebView);
+            promotionWebView = null;
+        }
+    }
 }
@@ -0,0 +1,188 @@
+package com.affirm.android;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Retries the requests failing on a transient error, with an exponential backoff and full
+ * jitter. Only GET and HEAD requests and requests built as idempotent are retried, so e.g. a
+ * checkout is never created twice. A {@code Retry-After} from the server replaces the backoff,
+ * unless it asks for a longer pause than a caller would wait for. The last failure is returned
+ * right away when the deadline of the call would expire before the next attempt, and a call
+ * cancelled while waiting isn't attempted again.
+ */
+final class AffirmRetryInterceptor implements Interceptor {
+
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MILLIS = 250;
+    static final long DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(4);
+    // A response asking to retry later than this is returned as is
+    static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+
+    AffirmRetryInterceptor(int maxAttempts) {
+        this(maxAttempts, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random());
+    }
+
+    AffirmRetryInterceptor(int maxAttempts,
+                           long baseDelayMillis,
+                           long maxDelayMillis,
+                           @NonNull Random random) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (maxAttempts <= 1 || !isIdempotent(request)) {
+            return chain.proceed(request);
+        }
+
+        // The deadline of the call started about when it reached this interceptor
+        final long startNanos = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            final long delayMillis;
+            try {
+                final Response response = chain.proceed(request);
+                if (attempt >= maxAttempts || !isTransient(response.code())) {
+                    return response;
+                }
+                final long retryAfterMillis = retryAfterMillis(response);
+                if (retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+                    return response;
+                }
+                delayMillis = retryAfterMillis >= 0 ? retryAfterMillis : backoffMillis(attempt);
+                if (delayMillis >= remainingMillis(chain, startNanos)) {
+                    return response;
+                }
+                response.close();
+            } catch (IOException e) {
+                if (attempt >= maxAttempts || chain.call().isCanceled()) {
+                    throw e;
+                }
+                delayMillis = backoffMillis(attempt);
+                if (delayMillis >= remainingMillis(chain, startNanos)) {
+                    throw e;
+                }
+            }
+
+            AffirmLog.v("Retrying " + request.url() + " in " + delayMillis + "ms, attempt "
+                    + (attempt + 1) + " of " + maxAttempts);
+            throwIfCanceled(chain);
+            sleep(delayMillis);
+            throwIfCanceled(chain);
+        }
+    }
+
+    /**
+     * @return the time left before the deadline of the call expires, or Long.MAX_VALUE if it
+     * has none
+     */
+    private static long remainingMillis(@NonNull Chain chain, long startNanos) {
+        final long timeoutNanos = chain.call().timeout().timeoutNanos();
+        if (timeoutNanos == 0) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos - (System.nanoTime() - startNanos));
+    }
+
+    private static void throwIfCanceled(@NonNull Chain chain) throws IOException {
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+    }
+
+    private static boolean isIdempotent(@NonNull Request request) {
+        final AffirmHttpRequest affirmRequest = request.tag(AffirmHttpRequest.class);
+        if (affirmRequest != null && affirmRequest.isIdempotent()) {
+            return true;
+        }
+        return "GET".equals(request.method()) || "HEAD".equals(request.method());
+    }
+
+    private static boolean isTransient(int code) {
+        switch (code) {
+            case 408:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Exponential backoff with full jitter, so clients failing together don't retry together
+    long backoffMillis(int attempt) {
+        final long exponential = baseDelayMillis << Math.min(attempt - 1, 30);
+        final long cap = exponential > 0 ? Math.min(maxDelayMillis, exponential) : maxDelayMillis;
+        return (long) (random.nextDouble() * cap);
+    }
+
+    /**
+     * @return the delay asked for by the {@code Retry-After} header, or -1 if there is none
+     */
+    static long retryAfterMillis(@NonNull Response response) {
+        final String retryAfter = response.header(HEADER_RETRY_AFTER);
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            final Date date = parseHttpDate(retryAfter);
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+        }
+    }
+
+    @Nullable
+    private static Date parseHttpDate(@NonNull String value) {
+        final SimpleDateFormat format =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value.trim());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.affirm.android;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import static com.affirm.android.AffirmConstants.TAG_CHECKOUT;
+import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
+import static com.affirm.android.AffirmConstants.TAG_PRECONNECT;
+import static com.affirm.android.AffirmConstants.TAG_TRACKER;
+import static com.affirm.android.AffirmConstants.TAG_VCN_CHECKOUT;
+
+/**
+ * The timeouts of each kind of request, keyed on the tag of the request. A promo shown seconds
+ * late is useless, so promo calls are abandoned quickly and free their dispatcher slot, while
+ * checkout creation is given more time than the client defaults.
+ * <p>
+ * The deadline bounds the whole call, retries and backoff included. A connect or read timeout of
+ * 0 keeps the timeout of the client, a deadline of 0 leaves the call unbounded.
+ */
+final class AffirmTimeoutPolicy implements Interceptor {
+
+    static final class Timeouts {
+        final long connectTimeoutMillis;
+        final long readTimeoutMillis;
+        final long deadlineMillis;
+
+        Timeouts(long connectTimeoutMillis, long readTimeoutMillis, long deadlineMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            this.readTimeoutMillis = readTimeoutMillis;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    /**
+     * Attached to the request of each call. OkHttp cancels a call whose deadline expired just
+     * like a call cancelled by its caller, this tells them apart.
+     */
+    static final class Cancellation {
+        volatile boolean byCaller;
+    }
+
+    private static final Map<String, Timeouts> TIMEOUTS = new HashMap<>();
+
+    static {
+        // The read timeout ends a single slow attempt, the deadline ends the whole call once
+        // the retries can't make it in time anymore
+        TIMEOUTS.put(TAG_GET_NEW_PROMO, new Timeouts(
+                TimeUnit.SECONDS.toMillis(2),
+                TimeUnit.SECONDS.toMillis(2),
+                TimeUnit.SECONDS.toMillis(3)));
+        final Timeouts checkout = new Timeouts(
+                0,
+                TimeUnit.SECONDS.toMillis(60),
+                TimeUnit.SECONDS.toMillis(90));
+        TIMEOUTS.put(TAG_CHECKOUT, checkout);
+        TIMEOUTS.put(TAG_VCN_CHECKOUT, checkout);
+        TIMEOUTS.put(TAG_TRACKER, new Timeouts(
+                0,
+                TimeUnit.SECONDS.toMillis(10),
+                TimeUnit.SECONDS.toMillis(30)));
+        TIMEOUTS.put(TAG_PRECONNECT, new Timeouts(
+                0,
+                0,
+                TimeUnit.SECONDS.toMillis(10)));
+    }
+
+    @Nullable
+    static Timeouts forTag(@Nullable String tag) {
+        return tag != null ? TIMEOUTS.get(tag) : null;
+    }
+
+    /**
+     * Bound the whole call with the deadline of its kind of request.
+     */
+    static void applyDeadline(@NonNull Call call, @NonNull AffirmHttpRequest request) {
+        final Timeouts timeouts = forTag(request.getTag());
+        if (timeouts != null && timeouts.deadlineMillis > 0) {
+            call.timeout().timeout(timeouts.deadlineMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancel a call on behalf of its caller.
+     */
+    static void cancel(@NonNull Call call) {
+        final Cancellation cancellation = call.request().tag(Cancellation.class);
+        if (cancellation != null) {
+            cancellation.byCaller = true;
+        }
+        call.cancel();
+    }
+
+    /**
+     * @return true if the call was cancelled by its caller, false if it wasn't cancelled or ran
+     * out of its deadline
+     */
+    static boolean isCanceledByCaller(@NonNull Call call) {
+        if (!call.isCanceled()) {
+            return false;
+        }
+        final Cancellation cancellation = call.request().tag(Cancellation.class);
+        // Without a deadline only a caller can cancel the call, e.g. the app cancelling all the
+        // calls of its dispatcher
+        return cancellation == null
+                || cancellation.byCaller
+                || call.timeout().timeoutNanos() == 0;
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        final AffirmHttpRequest request = chain.request().tag(AffirmHttpRequest.class);
+        final Timeouts timeouts = request != null ? forTag(request.getTag()) : null;
+        if (timeouts == null) {
+            return chain.proceed(chain.request());
+        }
+
+        Chain timedChain = chain;
+        if (timeouts.connectTimeoutMillis > 0) {
+            timedChain = timedChain.withConnectTimeout(
+                    (int) timeouts.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        if (timeouts.readTimeoutMillis > 0) {
+            timedChain = timedChain.withReadTimeout(
+                    (int) timeouts.readTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return timedChain.proceed(chain.request());
+    }
+}
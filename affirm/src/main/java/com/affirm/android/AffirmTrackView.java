@@ -16,8 +16,6 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 import androidx.annotation.NonNull;
@@ -93,14 +91,6 @@ public class AffirmTrackView extends FrameLayout
     }
 
     private String initialHtml() {
-        String html;
-        try {
-            final InputStream ins =
-                    getResources().openRawResource(R.raw.affirm_track_order_confirmed);
-            html = AffirmUtils.readInputStream(ins);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
         final String fullPath = HTTPS_PROTOCOL + AffirmPlugins.get().baseJsUrl() + JS_PATH;
 
         final HashMap<String, String> map = new HashMap<>();
@@ -109,7 +99,7 @@ public class AffirmTrackView extends FrameLayout
         map.put(JAVASCRIPT, fullPath);
         map.put(TRACK_ORDER_OBJECT, buildOrderObject().toString());
         map.put(TRACK_PRODUCT_OBJECT, buildProductObject().toString());
-        return AffirmUtils.replacePlaceholders(html, map);
+        return HtmlTemplate.get(getResources(), R.raw.affirm_track_order_confirmed).render(map);
     }
 
     private JsonObject buildOrderObject() {
@@ -1,10 +1,14 @@
 package com.affirm.android;
 
 import android.os.Build;
+import android.os.SystemClock;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -14,10 +18,43 @@ import okhttp3.Headers;
 import okhttp3.Request;
 import okhttp3.Response;
 
+import static com.affirm.android.AffirmConstants.X_AFFIRM_REQUEST_ID;
+
 final class AffirmTracker {
 
     private static final AtomicInteger localLogCounter = new AtomicInteger();
 
+    // The network timings of an event, they differ between otherwise identical events
+    static final String TIMINGS = "timings";
+
+    // Headers identifying a single response, like X_AFFIRM_REQUEST_ID they differ between
+    // otherwise identical events
+    static final String CLOUDFRONT_ID = "x-amz-cf-id";
+    static final String CACHE = "x-cache";
+
+    // The device and app part of every event, it never changes
+    private static final JsonElement APP_ID = primitive("Android SDK");
+    private static final JsonElement RELEASE = primitive(BuildConfig.VERSION_NAME);
+    private static final JsonElement ANDROID_SDK = new JsonPrimitive(Build.VERSION.SDK_INT);
+    private static final JsonElement DEVICE_NAME = primitive(Build.MODEL);
+
+    // The merchant part of every event, built once per configuration
+    @Nullable
+    private static volatile MerchantEnvelope merchantEnvelope;
+
+    private static final class MerchantEnvelope {
+        final AffirmPlugins plugins;
+        final JsonElement merchantKey;
+        final JsonElement environment;
+
+        MerchantEnvelope(@NonNull AffirmPlugins plugins) {
+            this.plugins = plugins;
+            this.merchantKey = primitive(plugins.publicKey());
+            this.environment = primitive(
+                    plugins.environmentName().toLowerCase(Locale.getDefault()));
+        }
+    }
+
     private AffirmTracker() {
     }
 
@@ -26,6 +63,7 @@ final class AffirmTracker {
         CHECKOUT_CREATION_SUCCESS("Checkout creation success"),
         CHECKOUT_WEBVIEW_SUCCESS("Checkout webView success"),
         CHECKOUT_WEBVIEW_FAIL("Checkout WebView failed"),
+        CHECKOUT_WEBVIEW_LOADED("Checkout webView loaded"),
         VCN_CHECKOUT_CREATION_FAIL("Vcn Checkout creation failed"),
         VCN_CHECKOUT_CREATION_SUCCESS("Vcn Checkout creation success"),
         VCN_CHECKOUT_WEBVIEW_SUCCESS("Vcn Checkout webView success"),
@@ -36,9 +74,11 @@ final class AffirmTracker {
         NETWORK_ERROR("network error");
 
         private final String mName;
+        private final JsonPrimitive jsonName;
 
         TrackingEvent(String name) {
             mName = name;
+            jsonName = new JsonPrimitive(name);
         }
     }
 
@@ -46,9 +86,11 @@ final class AffirmTracker {
         INFO("info"), WARNING("warning"), ERROR("error");
 
         private final String level;
+        private final JsonPrimitive jsonLevel;
 
         TrackingLevel(String level) {
             this.level = level;
+            this.jsonLevel = new JsonPrimitive(level);
         }
 
         protected String getLevel() {
@@ -56,61 +98,99 @@ final class AffirmTracker {
         }
     }
 
+    /**
+     * @param data the event specific data, copied so the caller's object is left as it is
+     */
     static void track(@NonNull TrackingEvent event, @NonNull TrackingLevel level,
                       @Nullable JsonObject data) {
-        final JsonObject trackingData = addTrackingData(event.mName, data, level);
-        new TrackerRequest(trackingData).create();
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        final AffirmTrackerThrottle throttle = plugins.trackerThrottle();
+        switch (throttle.admit(event, level, data, SystemClock.elapsedRealtime())) {
+            case TRACK:
+                plugins.trackerQueue().enqueue(createTrackingEvent(event, level, data));
+                break;
+            case COLLAPSE:
+                plugins.trackerQueue().schedule(() -> trackDuplicates(plugins),
+                        throttle.duplicateWindowMillis());
+                break;
+            default:
+                break;
+        }
     }
 
-    @NonNull
-    private static JsonObject addTrackingData(@NonNull String eventName,
-                                              @Nullable JsonObject eventData,
-                                              @NonNull TrackingLevel level) {
+    // Sends one event per window of identical events, with the number of repeats
+    private static void trackDuplicates(@NonNull AffirmPlugins plugins) {
+        final List<AffirmTrackerThrottle.Duplicates> duplicates =
+                plugins.trackerThrottle().drain(SystemClock.elapsedRealtime());
+        for (AffirmTrackerThrottle.Duplicates duplicate : duplicates) {
+            final JsonObject trackingEvent =
+                    createTrackingEvent(duplicate.event, duplicate.level, duplicate.data);
+            trackingEvent.addProperty("repeat_count", duplicate.count);
+            plugins.trackerQueue().enqueue(trackingEvent);
+        }
+    }
 
-        final Gson gson = new Gson();
-        final JsonObject data = eventData == null ? new JsonObject()
-                : gson.fromJson(gson.toJson(eventData, JsonObject.class), JsonObject.class);
+    /**
+     * Complete a copy of {@code data} with the tracking envelope. The envelope values are built
+     * once and shared by every event.
+     */
+    @NonNull
+    static JsonObject createTrackingEvent(@NonNull TrackingEvent event,
+                                          @NonNull TrackingLevel level,
+                                          @Nullable JsonObject data) {
+        final JsonObject trackingEvent = data != null ? data.deepCopy() : new JsonObject();
+        final MerchantEnvelope merchant = merchantEnvelope();
+
+        trackingEvent.addProperty("local_log_counter", localLogCounter.getAndIncrement());
+        trackingEvent.addProperty("ts", System.currentTimeMillis());
+        trackingEvent.add("app_id", APP_ID);
+        trackingEvent.add("release", RELEASE);
+        trackingEvent.add("android_sdk", ANDROID_SDK);
+        trackingEvent.add("device_name", DEVICE_NAME);
+        trackingEvent.add("merchant_key", merchant.merchantKey);
+        trackingEvent.add("environment", merchant.environment);
+        trackingEvent.add("event_name", event.jsonName);
+        trackingEvent.add("level", level.jsonLevel);
+        return trackingEvent;
+    }
 
-        fillTrackingData(eventName, data, level);
-        return data;
+    @NonNull
+    private static MerchantEnvelope merchantEnvelope() {
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        MerchantEnvelope envelope = merchantEnvelope;
+        if (envelope == null || envelope.plugins != plugins) {
+            envelope = new MerchantEnvelope(plugins);
+            merchantEnvelope = envelope;
+        }
+        return envelope;
     }
 
-    private static void fillTrackingData(@NonNull String eventName,
-                                         @NonNull JsonObject data,
-                                         @NonNull AffirmTracker.TrackingLevel level) {
-        final long timeStamp = System.currentTimeMillis();
-        // Set the log counter and then increment the logCounter
-        int localLogCounter = AffirmTracker.localLogCounter.getAndIncrement();
-        data.addProperty("local_log_counter", localLogCounter);
-        data.addProperty("ts", timeStamp);
-        data.addProperty("app_id", "Android SDK");
-        data.addProperty("release", BuildConfig.VERSION_NAME);
-        data.addProperty("android_sdk", Build.VERSION.SDK_INT);
-        data.addProperty("device_name", Build.MODEL);
-        data.addProperty("merchant_key", AffirmPlugins.get().publicKey());
-        data.addProperty("environment",
-                AffirmPlugins.get().environmentName().toLowerCase(Locale.getDefault()));
-        data.addProperty("event_name", eventName);
-        data.addProperty("level", level.getLevel());
+    @NonNull
+    private static JsonElement primitive(@Nullable String value) {
+        return value != null ? new JsonPrimitive(value) : JsonNull.INSTANCE;
     }
 
     @NonNull
     static JsonObject createTrackingNetworkJsonObj(@NonNull Request request,
                                                    @Nullable Response response) {
         final JsonObject jsonObject = new JsonObject();
-        final String affirmRequestIDHeader = "X-Affirm-Request-Id";
         jsonObject.addProperty("url", request.url().toString());
         jsonObject.addProperty("method", request.method());
         if (response != null) {
             final Headers headers = response.headers();
             jsonObject.addProperty("status_code", response.code());
-            jsonObject.addProperty(affirmRequestIDHeader, headers.get(affirmRequestIDHeader));
-            jsonObject.addProperty("x-amz-cf-id", headers.get("x-amz-cf-id"));
+            jsonObject.addProperty(X_AFFIRM_REQUEST_ID, headers.get(X_AFFIRM_REQUEST_ID));
+            jsonObject.addProperty(CLOUDFRONT_ID, headers.get(CLOUDFRONT_ID));
             jsonObject.addProperty("x-affirm-using-cdn", headers.get("x-affirm-using-cdn"));
-            jsonObject.addProperty("x-cache", headers.get("x-cache"));
+            jsonObject.addProperty(CACHE, headers.get(CACHE));
         } else {
             jsonObject.add("status_code", null);
-            jsonObject.add(affirmRequestIDHeader, null);
+            jsonObject.add(X_AFFIRM_REQUEST_ID, null);
+        }
+
+        final AffirmNetworkTimings timings = AffirmNetworkTimings.of(request);
+        if (timings != null && AffirmPlugins.get().trackRequestMetrics()) {
+            jsonObject.add(TIMINGS, AffirmPlugins.get().gson().toJsonTree(timings.snapshot()));
         }
         return jsonObject;
     }
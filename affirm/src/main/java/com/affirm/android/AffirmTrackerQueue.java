@@ -0,0 +1,231 @@
+package com.affirm.android;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Buffers tracking events in memory and sends them to the tracker as a single JSON array once
+ * either the batch size or the flush interval is reached. Pending events are spilled to a small
+ * file so they survive process death and are picked up again on the next initialization.
+ */
+final class AffirmTrackerQueue {
+
+    static final int DEFAULT_BATCH_SIZE = 20;
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    static final int MAX_QUEUE_SIZE = 200;
+
+    private static final String SPILL_FILE_NAME = "affirm_tracker_events.json";
+
+    private final Object lock = new Object();
+    private final Deque<JsonObject> events = new ArrayDeque<>();
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    @Nullable
+    private final File spillFile;
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean persistScheduled;
+    private boolean flushing;
+
+    AffirmTrackerQueue(int batchSize, long flushIntervalMillis, @Nullable File cacheDir) {
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.spillFile = cacheDir != null ? new File(cacheDir, SPILL_FILE_NAME) : null;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "affirm-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        restore();
+    }
+
+    void enqueue(@NonNull JsonObject event) {
+        synchronized (lock) {
+            if (events.size() >= MAX_QUEUE_SIZE) {
+                // Keep the most recent events, the oldest ones are the least useful
+                events.pollFirst();
+            }
+            events.addLast(event);
+
+            if (events.size() >= batchSize) {
+                scheduleFlush(0);
+            } else {
+                scheduleFlush(flushIntervalMillis);
+                schedulePersist();
+            }
+        }
+    }
+
+    /**
+     * Sends the pending events right away, e.g. when the app goes to the background.
+     */
+    void flush() {
+        synchronized (lock) {
+            scheduleFlush(0);
+        }
+    }
+
+    /**
+     * Runs {@code task} on the tracker thread after {@code delayMillis}.
+     */
+    void schedule(@NonNull Runnable task, long delayMillis) {
+        executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    int size() {
+        synchronized (lock) {
+            return events.size();
+        }
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        if (scheduledFlush != null && !scheduledFlush.isDone()) {
+            if (delayMillis > 0 || scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= 0) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(this::sendBatch, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void schedulePersist() {
+        if (spillFile == null || persistScheduled) {
+            return;
+        }
+        persistScheduled = true;
+        executor.execute(() -> {
+            synchronized (lock) {
+                persistScheduled = false;
+            }
+            persist();
+        });
+    }
+
+    private void sendBatch() {
+        final List<JsonObject> batch = new ArrayList<>();
+        synchronized (lock) {
+            if (flushing || events.isEmpty()) {
+                return;
+            }
+            while (batch.size() < batchSize && !events.isEmpty()) {
+                batch.add(events.pollFirst());
+            }
+            flushing = true;
+        }
+
+        final JsonArray payload = new JsonArray();
+        for (JsonObject event : batch) {
+            payload.add(event);
+        }
+
+        new TrackerRequest(payload, retry -> executor.execute(() -> onBatchSent(batch, retry)))
+                .create();
+    }
+
+    private void onBatchSent(@NonNull List<JsonObject> batch, boolean retry) {
+        synchronized (lock) {
+            flushing = false;
+            if (retry) {
+                // Put the batch back in front, keeping the queue bounded
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    if (events.size() >= MAX_QUEUE_SIZE) {
+                        break;
+                    }
+                    events.addFirst(batch.get(i));
+                }
+                if (!events.isEmpty()) {
+                    scheduleFlush(flushIntervalMillis);
+                }
+            } else if (events.size() >= batchSize) {
+                scheduleFlush(0);
+            } else if (!events.isEmpty()) {
+                scheduleFlush(flushIntervalMillis);
+            }
+        }
+        persist();
+    }
+
+    void persist() {
+        if (spillFile == null) {
+            return;
+        }
+
+        final JsonArray snapshot = new JsonArray();
+        synchronized (lock) {
+            for (JsonObject event : events) {
+                snapshot.add(event);
+            }
+        }
+
+        if (snapshot.size() == 0) {
+            if (spillFile.exists() && !spillFile.delete()) {
+                AffirmLog.w("Failed to delete tracker spill file");
+            }
+            return;
+        }
+
+        final File tmpFile = new File(spillFile.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmpFile),
+                StandardCharsets.UTF_8)) {
+            TrackerRequest.writeTrackingData(out, snapshot);
+        } catch (IOException e) {
+            AffirmLog.w("Failed to persist tracker events", e);
+            return;
+        }
+        if (!tmpFile.renameTo(spillFile)) {
+            AffirmLog.w("Failed to persist tracker events");
+        }
+    }
+
+    private void restore() {
+        if (spillFile == null || !spillFile.exists()) {
+            return;
+        }
+
+        try (InputStream ins = new FileInputStream(spillFile)) {
+            final JsonElement element = new JsonParser().parse(AffirmUtils.readInputStream(ins));
+            if (element.isJsonArray()) {
+                synchronized (lock) {
+                    for (JsonElement event : element.getAsJsonArray()) {
+                        if (event.isJsonObject() && events.size() < MAX_QUEUE_SIZE) {
+                            events.addLast(event.getAsJsonObject());
+                        }
+                    }
+                    if (!events.isEmpty()) {
+                        scheduleFlush(flushIntervalMillis);
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            AffirmLog.w("Failed to restore tracker events", e);
+            if (!spillFile.delete()) {
+                AffirmLog.w("Failed to delete tracker spill file");
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.affirm.android;
+
+import com.affirm.android.AffirmTracker.TrackingEvent;
+import com.affirm.android.AffirmTracker.TrackingLevel;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Decides which tracking events are sent, so a failing network doesn't turn into a storm of
+ * tracking requests. Events are sampled, then identical events within the duplicate window are
+ * collapsed into the first one plus a single event carrying the repeat count, and finally each
+ * kind of event is rate limited with a token bucket.
+ */
+final class AffirmTrackerThrottle {
+
+    static final double DEFAULT_SAMPLE_RATE = 1;
+    static final int DEFAULT_MAX_EVENTS_PER_MINUTE = 30;
+    static final long DEFAULT_DUPLICATE_WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    // Bounds the memory used by the duplicate detection
+    static final int MAX_TRACKED_DUPLICATES = 100;
+
+    // The event data that differs between each occurrence of the same event
+    private static final Set<String> VOLATILE_DATA = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(
+                    AffirmTracker.TIMINGS,
+                    AffirmConstants.X_AFFIRM_REQUEST_ID,
+                    AffirmTracker.CLOUDFRONT_ID,
+                    AffirmTracker.CACHE)));
+
+    enum Decision {
+        // Send the event
+        TRACK,
+        // Drop the event
+        DROP,
+        // The event is the first repeat in its window, collect the duplicates at the window end
+        COLLAPSE
+    }
+
+    /**
+     * Identical events that were not sent, to be tracked once with their count.
+     */
+    static final class Duplicates {
+        @NonNull
+        final TrackingEvent event;
+        @NonNull
+        final TrackingLevel level;
+        @Nullable
+        final JsonObject data;
+        final int count;
+
+        Duplicates(@NonNull TrackingEvent event,
+                   @NonNull TrackingLevel level,
+                   @Nullable JsonObject data,
+                   int count) {
+            this.event = event;
+            this.level = level;
+            this.data = data;
+            this.count = count;
+        }
+    }
+
+    private static final class Window {
+        final TrackingEvent event;
+        final TrackingLevel level;
+        final long startedAt;
+        // The data of the first repeat, it stands for all of them
+        JsonObject data;
+        int count;
+
+        Window(TrackingEvent event, TrackingLevel level, long startedAt) {
+            this.event = event;
+            this.level = level;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    private final double sampleRate;
+    private final int maxEventsPerMinute;
+    private final long duplicateWindowMillis;
+    private final Random random;
+
+    // In start order, so the expired windows are at the head
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+    private final List<Duplicates> ready = new ArrayList<>();
+    private final Map<TrackingEvent, Bucket> buckets = new EnumMap<>(TrackingEvent.class);
+
+    AffirmTrackerThrottle(double sampleRate,
+                          int maxEventsPerMinute,
+                          long duplicateWindowMillis,
+                          @NonNull Random random) {
+        this.sampleRate = sampleRate;
+        this.maxEventsPerMinute = maxEventsPerMinute;
+        this.duplicateWindowMillis = duplicateWindowMillis;
+        this.random = random;
+    }
+
+    long duplicateWindowMillis() {
+        return duplicateWindowMillis;
+    }
+
+    /**
+     * @param now the current time, from {@link android.os.SystemClock#elapsedRealtime()}
+     */
+    @NonNull
+    synchronized Decision admit(@NonNull TrackingEvent event,
+                                @NonNull TrackingLevel level,
+                                @Nullable JsonObject data,
+                                long now) {
+        if (sampleRate < 1 && random.nextDouble() >= sampleRate) {
+            return Decision.DROP;
+        }
+
+        if (duplicateWindowMillis > 0) {
+            expireWindows(now);
+            final String key = key(event, level, data);
+            final Window window = windows.get(key);
+            if (window != null) {
+                window.count++;
+                if (window.count > 1) {
+                    return Decision.DROP;
+                }
+                // Tracked later, the caller may have changed its object by then
+                window.data = data != null ? data.deepCopy() : null;
+                return Decision.COLLAPSE;
+            }
+            if (windows.size() >= MAX_TRACKED_DUPLICATES) {
+                // Too many distinct events, make room by closing the oldest window early
+                final Iterator<Window> oldest = windows.values().iterator();
+                collect(oldest.next());
+                oldest.remove();
+            }
+            windows.put(key, new Window(event, level, now));
+        }
+
+        return takeToken(event, now) ? Decision.TRACK : Decision.DROP;
+    }
+
+    @NonNull
+    private static String key(@NonNull TrackingEvent event,
+                              @NonNull TrackingLevel level,
+                              @Nullable JsonObject data) {
+        final StringBuilder key = new StringBuilder()
+                .append(event.name()).append('|').append(level.name());
+        if (data != null) {
+            for (Map.Entry<String, JsonElement> member : data.entrySet()) {
+                if (!VOLATILE_DATA.contains(member.getKey())) {
+                    key.append('|').append(member.getKey()).append('=').append(member.getValue());
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the duplicates of the windows ended by {@code now}, each to be tracked once
+     */
+    @NonNull
+    synchronized List<Duplicates> drain(long now) {
+        expireWindows(now);
+        final List<Duplicates> result = new ArrayList<>(ready);
+        ready.clear();
+        return result;
+    }
+
+    private void expireWindows(long now) {
+        final Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            final Window window = iterator.next();
+            if (now - window.startedAt < duplicateWindowMillis) {
+                break;
+            }
+            iterator.remove();
+            collect(window);
+        }
+    }
+
+    // Keeps the duplicates of a closed window, if it has any
+    private void collect(@NonNull Window window) {
+        if (window.count > 0) {
+            ready.add(new Duplicates(window.event, window.level, window.data, window.count));
+        }
+    }
+
+    private boolean takeToken(@NonNull TrackingEvent event, long now) {
+        Bucket bucket = buckets.get(event);
+        if (bucket == null) {
+            bucket = new Bucket(maxEventsPerMinute, now);
+            buckets.put(event, bucket);
+        }
+
+        final double refill = (now - bucket.refilledAt)
+                * (double) maxEventsPerMinute / TimeUnit.MINUTES.toMillis(1);
+        bucket.tokens = Math.min(maxEventsPerMinute, bucket.tokens + refill);
+        bucket.refilledAt = now;
+        if (bucket.tokens < 1) {
+            return false;
+        }
+        bucket.tokens--;
+        return true;
+    }
+}
@@ -22,9 +22,6 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
-import static com.affirm.android.AffirmConstants.PLACEHOLDER_END;
-import static com.affirm.android.AffirmConstants.PLACEHOLDER_START;
-
 public final class AffirmUtils {
 
     private AffirmUtils() {
@@ -48,14 +45,7 @@ public final class AffirmUtils {
     }
 
     static String replacePlaceholders(@NonNull String text, @NonNull Map<String, String> map) {
-        for (Object o : map.entrySet()) {
-            Map.Entry pair = (Map.Entry) o;
-
-            final String placeholder = PLACEHOLDER_START + pair.getKey() + PLACEHOLDER_END;
-            text = text.replace(placeholder, (String) pair.getValue());
-        }
-
-        return text;
+        return HtmlTemplate.compile(text).render(map);
     }
 
     static void debuggableWebView(@NonNull Context context) {
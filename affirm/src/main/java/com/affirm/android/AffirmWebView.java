@@ -20,11 +20,27 @@ class AffirmWebView extends WebView {
 
         final String userAgent = USER_AGENT_PREFIX + " " + getSettings().getUserAgentString();
         getSettings().setUserAgentString(userAgent);
-        clearCache(true);
+        if (isCacheDisabled()) {
+            clearCache(true);
+            getSettings().setCacheMode(WebSettings.LOAD_NO_CACHE);
+        } else {
+            getSettings().setCacheMode(WebSettings.LOAD_DEFAULT);
+        }
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        if (plugins != null
+                && plugins.webViewCachePolicy() == Affirm.WebViewCachePolicy.ASSET_CACHE) {
+            // Created here on the main thread, the requests are intercepted on a background one
+            plugins.webAssetCache(context);
+        }
         getSettings().setJavaScriptEnabled(true);
         getSettings().setDomStorageEnabled(true);
         getSettings().setSupportMultipleWindows(true);
-        getSettings().setCacheMode(WebSettings.LOAD_NO_CACHE);
         setVerticalScrollBarEnabled(false);
     }
+
+    static boolean isCacheDisabled() {
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        return plugins == null
+                || plugins.webViewCachePolicy() == Affirm.WebViewCachePolicy.NO_CACHE;
+    }
 }
\ No newline at end of file
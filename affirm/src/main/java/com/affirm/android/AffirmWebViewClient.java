@@ -2,6 +2,7 @@ package com.affirm.android;
 
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
@@ -30,6 +31,21 @@ abstract class AffirmWebViewClient extends WebViewClient {
         return !url.startsWith(HTTP);
     }
 
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        // Not on the main thread, the cache was created with the web view
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        final WebAssetCache cache = plugins != null ? plugins.peekWebAssetCache() : null;
+        if (cache != null
+                && plugins.webViewCachePolicy() == Affirm.WebViewCachePolicy.ASSET_CACHE) {
+            final WebResourceResponse response = cache.intercept(request);
+            if (response != null) {
+                return response;
+            }
+        }
+        return super.shouldInterceptRequest(view, request);
+    }
+
     @Override
     public void onReceivedError(WebView view, WebResourceRequest request, WebResourceError error) {
         callbacks.onWebViewError(new ConnectionException(error.toString()));
@@ -53,6 +53,7 @@ public class CheckoutActivity extends CheckoutBaseActivity
             @Override
             public void onSuccess(@NonNull CheckoutResponse response) {
                 AffirmTracker.track(CHECKOUT_CREATION_SUCCESS, INFO, null);
+                onCheckoutLoading();
                 webView.loadUrl(response.redirectUrl());
             }
         };
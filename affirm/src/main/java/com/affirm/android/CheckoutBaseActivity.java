@@ -2,8 +2,11 @@ package com.affirm.android;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.webkit.WebView;
 
 import com.affirm.android.model.Checkout;
+import com.google.gson.JsonObject;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -11,10 +14,20 @@ import androidx.annotation.Nullable;
 import static com.affirm.android.Affirm.RESULT_ERROR;
 import static com.affirm.android.AffirmConstants.CHECKOUT_ERROR;
 import static com.affirm.android.AffirmConstants.CHECKOUT_EXTRA;
+import static com.affirm.android.AffirmTracker.TrackingEvent.CHECKOUT_WEBVIEW_LOADED;
+import static com.affirm.android.AffirmTracker.TrackingLevel.INFO;
 
 abstract class CheckoutBaseActivity extends AffirmActivity {
 
-    private CheckoutRequest checkoutRequest;
+    private AffirmRequest checkoutRequest;
+
+    private boolean warmWebView;
+    private boolean preparedCheckout;
+    private long attachedAt;
+    // The warm WebView may still report the progress of its preconnect page until the checkout
+    // starts loading
+    private boolean checkoutLoading;
+    private boolean firstPaintTracked;
 
     private Checkout checkout;
 
@@ -27,6 +40,12 @@ abstract class CheckoutBaseActivity extends AffirmActivity {
         AffirmUtils.hideActionBar(this);
     }
 
+    @Override
+    WebView createWebView() {
+        warmWebView = CheckoutWebViewPool.isWarm();
+        return CheckoutWebViewPool.acquire(this);
+    }
+
     @Override
     void initData(@Nullable Bundle savedInstanceState) {
         if (savedInstanceState != null) {
@@ -45,8 +64,55 @@ abstract class CheckoutBaseActivity extends AffirmActivity {
 
     @Override
     void onAttached() {
-        checkoutRequest = new CheckoutRequest(checkout, getInnerCheckoutCallback(), useVCN());
-        checkoutRequest.create();
+        attachedAt = SystemClock.elapsedRealtime();
+        final InnerCheckoutCallback callback = getInnerCheckoutCallback();
+        checkoutRequest = CheckoutPrefetcher.take(checkout, useVCN(), callback);
+        preparedCheckout = checkoutRequest != null;
+        if (checkoutRequest == null) {
+            checkoutRequest = new CheckoutRequest(checkout, callback, useVCN());
+            checkoutRequest.create();
+        }
+    }
+
+    /**
+     * Must be called right before the checkout page is loaded in the WebView.
+     */
+    void onCheckoutLoading() {
+        checkoutLoading = true;
+    }
+
+    @Override
+    public void chromeLoadCompleted() {
+        if (!checkoutLoading) {
+            return;
+        }
+        super.chromeLoadCompleted();
+        if (!firstPaintTracked) {
+            firstPaintTracked = true;
+            trackFirstPaint(SystemClock.elapsedRealtime() - attachedAt);
+        }
+    }
+
+    // Tracked with how the checkout was started and the average time of the loads that had
+    // neither Affirm.warmUp nor Affirm.prepareCheckout, to compare the two
+    private void trackFirstPaint(long loadTimeMillis) {
+        CheckoutLoadTimes.record(warmWebView, preparedCheckout, loadTimeMillis);
+        final long averageMillis = CheckoutLoadTimes.averageMillis(warmWebView, preparedCheckout);
+        final long coldAverageMillis = CheckoutLoadTimes.averageMillis(false, false);
+        AffirmLog.d("Checkout loaded in " + loadTimeMillis + "ms, warm WebView: " + warmWebView
+                + ", prepared checkout: " + preparedCheckout + ", average: " + averageMillis
+                + "ms, cold average: " + coldAverageMillis + "ms");
+
+        final JsonObject data = new JsonObject();
+        data.addProperty("load_time_ms", loadTimeMillis);
+        data.addProperty("warm_webview", warmWebView);
+        data.addProperty("prepared_checkout", preparedCheckout);
+        data.addProperty("average_load_time_ms", averageMillis);
+        if (coldAverageMillis != -1) {
+            data.addProperty("cold_average_load_time_ms", coldAverageMillis);
+        }
+        data.addProperty("vcn", useVCN());
+        AffirmTracker.track(CHECKOUT_WEBVIEW_LOADED, INFO, data);
     }
 
     @Override
@@ -0,0 +1,42 @@
+package com.affirm.android;
+
+/**
+ * The checkout load times of this process, by how the checkout was started, so a load can be
+ * compared with the ones that had neither a warm WebView nor a prepared checkout.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class CheckoutLoadTimes {
+
+    // Indexed by path(), the counts and the total times of the loads
+    private static final int[] counts = new int[4];
+    private static final long[] totalMillis = new long[4];
+
+    private CheckoutLoadTimes() {
+    }
+
+    static void record(boolean warmWebView, boolean preparedCheckout, long loadTimeMillis) {
+        final int path = path(warmWebView, preparedCheckout);
+        counts[path]++;
+        totalMillis[path] += loadTimeMillis;
+    }
+
+    /**
+     * @return the average load time of the path, or -1 if no checkout was loaded this way yet
+     */
+    static long averageMillis(boolean warmWebView, boolean preparedCheckout) {
+        final int path = path(warmWebView, preparedCheckout);
+        return counts[path] == 0 ? -1 : totalMillis[path] / counts[path];
+    }
+
+    static void reset() {
+        for (int path = 0; path < counts.length; path++) {
+            counts[path] = 0;
+            totalMillis[path] = 0;
+        }
+    }
+
+    private static int path(boolean warmWebView, boolean preparedCheckout) {
+        return (warmWebView ? 1 : 0) + (preparedCheckout ? 2 : 0);
+    }
+}
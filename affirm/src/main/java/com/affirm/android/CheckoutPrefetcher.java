@@ -0,0 +1,148 @@
+package com.affirm.android;
+
+import android.os.SystemClock;
+
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.Checkout;
+import com.affirm.android.model.CheckoutResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Creates a checkout ahead of {@link Affirm#startCheckout}, so that the checkout request runs
+ * while the checkout activity starts. The checkout activity takes over the prepared checkout,
+ * whether it is still in flight or already created, if it was prepared for the same checkout.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class CheckoutPrefetcher {
+
+    // A prepared checkout is not used anymore once it has been created for this long
+    static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Nullable
+    private static Prepared prepared;
+
+    private CheckoutPrefetcher() {
+    }
+
+    static void prepare(@NonNull Checkout checkout, boolean useVCN) {
+        if (prepared != null) {
+            if (prepared.isUsableFor(checkout, useVCN, SystemClock.elapsedRealtime())) {
+                return;
+            }
+            prepared.cancel();
+        }
+        prepared = new Prepared(checkout, useVCN);
+        prepared.create();
+    }
+
+    /**
+     * Hand the prepared checkout over to the checkout activity.
+     *
+     * @return the request now delivering to {@code callback}, or null if there is no usable
+     * prepared checkout, in which case the checkout has to be created
+     */
+    @Nullable
+    static AffirmRequest take(@NonNull Checkout checkout,
+                              boolean useVCN,
+                              @NonNull InnerCheckoutCallback callback) {
+        return take(checkout, useVCN, callback, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param now the current time, from {@link SystemClock#elapsedRealtime()}
+     */
+    @Nullable
+    static AffirmRequest take(@NonNull Checkout checkout,
+                              boolean useVCN,
+                              @NonNull InnerCheckoutCallback callback,
+                              long now) {
+        final Prepared current = prepared;
+        prepared = null;
+        if (current == null) {
+            return null;
+        }
+        if (!current.isUsableFor(checkout, useVCN, now)) {
+            current.cancel();
+            return null;
+        }
+        current.attach(callback);
+        return current;
+    }
+
+    static void cancel() {
+        if (prepared != null) {
+            prepared.cancel();
+            prepared = null;
+        }
+    }
+
+    private static final class Prepared implements AffirmRequest, InnerCheckoutCallback {
+
+        private final Checkout checkout;
+        private final boolean useVCN;
+        private final CheckoutRequest request;
+
+        @Nullable
+        private InnerCheckoutCallback target;
+        @Nullable
+        private CheckoutResponse response;
+        private long createdAt;
+        private boolean failed;
+
+        Prepared(@NonNull Checkout checkout, boolean useVCN) {
+            this.checkout = checkout;
+            this.useVCN = useVCN;
+            this.request = new CheckoutRequest(checkout, this, useVCN);
+        }
+
+        boolean isUsableFor(@NonNull Checkout checkout, boolean useVCN, long now) {
+            if (failed || this.useVCN != useVCN || !this.checkout.equals(checkout)) {
+                return false;
+            }
+            return response == null || now - createdAt < MAX_AGE_MILLIS;
+        }
+
+        void attach(@NonNull InnerCheckoutCallback callback) {
+            target = callback;
+            if (response != null) {
+                callback.onSuccess(response);
+            }
+        }
+
+        @Override
+        public void create() {
+            request.create();
+        }
+
+        @Override
+        public void cancel() {
+            target = null;
+            request.cancel();
+        }
+
+        @Override
+        public void onError(@NonNull AffirmException exception) {
+            if (target != null) {
+                target.onError(exception);
+            } else {
+                // Leave it to the checkout activity to try again
+                failed = true;
+                AffirmLog.w("Failed to prepare the checkout: " + exception.toString());
+            }
+        }
+
+        @Override
+        public void onSuccess(@NonNull CheckoutResponse response) {
+            this.response = response;
+            this.createdAt = SystemClock.elapsedRealtime();
+            if (target != null) {
+                target.onSuccess(response);
+            }
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package com.affirm.android;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -13,12 +10,16 @@ import com.affirm.android.model.Checkout;
 import com.affirm.android.model.CheckoutResponse;
 import com.affirm.android.model.Merchant;
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -37,6 +38,9 @@ import static com.affirm.android.AffirmTracker.createTrackingNetworkJsonObj;
 
 class CheckoutRequest implements AffirmRequest {
 
+    // A checkout response only holds the checkout id and redirect url
+    static final long MAX_RESPONSE_BYTES = 64 * 1024;
+
     @NonNull
     private final Checkout checkout;
     private final boolean useVCN;
@@ -55,7 +59,7 @@ class CheckoutRequest implements AffirmRequest {
 
     @Override
     public void create() {
-        Merchant merchant;
+        final Merchant merchant;
 
         if (useVCN) {
             merchant = Merchant.builder()
@@ -72,27 +76,12 @@ class CheckoutRequest implements AffirmRequest {
                     .build();
         }
 
-        Gson gson = AffirmPlugins.get().gson();
-        final JsonParser jsonParser = new JsonParser();
-
-        final JsonObject merchantJson = jsonParser.parse(gson.toJson(merchant)).getAsJsonObject();
-        final JsonObject metadataJson = new JsonObject();
-
-        merchantJson.addProperty("user_confirmation_url_action", "GET");
-        metadataJson.addProperty("platform_type", "Affirm Android SDK");
-        metadataJson.addProperty("platform_affirm", BuildConfig.VERSION_NAME);
-
-        final JsonObject checkoutJson = jsonParser.parse(gson.toJson(checkout)).getAsJsonObject();
-
-        checkoutJson.add("merchant", merchantJson);
-        checkoutJson.addProperty("api_version", "v2");
-        checkoutJson.add("metadata", metadataJson);
-
-        final JsonObject jsonRequest = new JsonObject();
-        jsonRequest.add("checkout", checkoutJson);
+        final Gson gson = AffirmPlugins.get().gson();
+        final AffirmHttpBody body = new AffirmHttpBody(CONTENT_TYPE,
+                (Writer writer) -> writeCheckoutJson(gson, writer, checkout, merchant));
 
         if (checkoutCall != null) {
-            checkoutCall.cancel();
+            AffirmTimeoutPolicy.cancel(checkoutCall);
         }
 
         checkoutCall = AffirmPlugins.get().restClient().getCallForRequest(
@@ -103,7 +92,7 @@ class CheckoutRequest implements AffirmRequest {
                                         + CHECKOUT_PATH
                         )
                         .setMethod(AffirmHttpRequest.Method.POST)
-                        .setBody(new AffirmHttpBody(CONTENT_TYPE, jsonRequest.toString()))
+                        .setBody(body)
                         .setTag(useVCN ? TAG_VCN_CHECKOUT : TAG_CHECKOUT)
                         .build()
         );
@@ -117,13 +106,24 @@ class CheckoutRequest implements AffirmRequest {
 
                 if (response.isSuccessful()) {
                     if (responseBody != null) {
-                        CheckoutResponse checkoutResponse = gson.fromJson(
-                                responseBody.string(),
-                                CheckoutResponse.class
-                        );
+                        final CheckoutResponse checkoutResponse;
+                        try {
+                            checkoutResponse = AffirmHttpClient.parseResponseBody(
+                                    responseBody,
+                                    CheckoutResponse.class,
+                                    MAX_RESPONSE_BYTES
+                            );
+                        } catch (IOException e) {
+                            handleErrorResponse(
+                                    new APIException("Failed to read the checkout response", e)
+                            );
+                            return;
+                        }
 
-                        if (checkoutCallback != null) {
-                            new Handler(Looper.getMainLooper()).post(
+                        if (checkoutResponse == null) {
+                            handleErrorResponse(new APIException("i/o failure", null));
+                        } else if (checkoutCallback != null) {
+                            AffirmPlugins.get().dispatcher().postToMain(
                                     () -> checkoutCallback.onSuccess(checkoutResponse)
                             );
                         }
@@ -148,13 +148,16 @@ class CheckoutRequest implements AffirmRequest {
 
             @Override
             public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                AffirmTracker.track(
-                        NETWORK_ERROR, ERROR,
-                        createTrackingNetworkJsonObj(
-                                call.request(),
-                                null
-                        )
-                );
+                // Not sent, the failures that opened the circuit were tracked already
+                if (!(e instanceof AffirmCircuitBreaker.CircuitOpenException)) {
+                    AffirmTracker.track(
+                            NETWORK_ERROR, ERROR,
+                            createTrackingNetworkJsonObj(
+                                    call.request(),
+                                    null
+                            )
+                    );
+                }
                 handleErrorResponse(new ConnectionException("i/o failure", e));
             }
         });
@@ -163,16 +166,192 @@ class CheckoutRequest implements AffirmRequest {
     @Override
     public void cancel() {
         if (checkoutCall != null) {
-            checkoutCall.cancel();
+            AffirmTimeoutPolicy.cancel(checkoutCall);
             checkoutCall = null;
         }
     }
 
+    /**
+     * Write the {"checkout": {..., "merchant": {...}, "api_version": "v2", "metadata": {...}}}
+     * envelope in a single pass with the generated type adapters, without building a json tree.
+     */
+    static void writeCheckoutJson(@NonNull Gson gson,
+                                  @NonNull Writer out,
+                                  @NonNull Checkout checkout,
+                                  @NonNull Merchant merchant) throws IOException {
+        final TypeAdapter<Checkout> checkoutAdapter = gson.getAdapter(Checkout.class);
+        final TypeAdapter<Merchant> merchantAdapter = gson.getAdapter(Merchant.class);
+
+        final OverridingJsonWriter writer = new OverridingJsonWriter(out);
+        // Same output as Gson.toJson: absent fields are left out
+        writer.setSerializeNulls(false);
+
+        writer.beginObject();
+        writer.name("checkout");
+        writer.overrideNextObject(checkoutWriter -> {
+            checkoutWriter.name("merchant");
+            checkoutWriter.overrideNextObject(merchantWriter ->
+                            merchantWriter.name("user_confirmation_url_action").value("GET"),
+                    "user_confirmation_url_action");
+            merchantAdapter.write(checkoutWriter, merchant);
+
+            checkoutWriter.name("api_version").value("v2");
+
+            checkoutWriter.name("metadata").beginObject();
+            checkoutWriter.name("platform_type").value("Affirm Android SDK");
+            checkoutWriter.name("platform_affirm").value(BuildConfig.VERSION_NAME);
+            checkoutWriter.endObject();
+        }, "merchant", "api_version", "metadata");
+        checkoutAdapter.write(writer, checkout);
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * A {@link JsonWriter} that lets the members of the next object be overridden while a type
+     * adapter writes it: the overridden members are dropped, and the overrides are written right
+     * before the object is closed.
+     */
+    private static final class OverridingJsonWriter extends JsonWriter {
+
+        interface Overrides {
+            void write(@NonNull OverridingJsonWriter writer) throws IOException;
+        }
+
+        private int depth;
+        private int overrideDepth = -1;
+        private Overrides overrides;
+        private Set<String> overriddenNames;
+        // Nesting of the value being dropped, -1 when not dropping anything
+        private int droppedNesting = -1;
+
+        OverridingJsonWriter(@NonNull Writer out) {
+            super(out);
+        }
+
+        void overrideNextObject(@NonNull Overrides overrides, String... overriddenNames) {
+            this.overrideDepth = depth + 1;
+            this.overrides = overrides;
+            this.overriddenNames = new HashSet<>(Arrays.asList(overriddenNames));
+        }
+
+        @Override
+        public JsonWriter name(String name) throws IOException {
+            if (droppedNesting >= 0) {
+                return this;
+            }
+            if (overrides != null && depth == overrideDepth && overriddenNames.contains(name)) {
+                droppedNesting = 0;
+                return this;
+            }
+            return super.name(name);
+        }
+
+        @Override
+        public JsonWriter beginObject() throws IOException {
+            if (droppedNesting >= 0) {
+                droppedNesting++;
+                return this;
+            }
+            super.beginObject();
+            depth++;
+            return this;
+        }
+
+        @Override
+        public JsonWriter endObject() throws IOException {
+            if (droppedNesting >= 0) {
+                return endDropped();
+            }
+            if (overrides != null && depth == overrideDepth) {
+                final Overrides pending = overrides;
+                overrides = null;
+                overriddenNames = null;
+                overrideDepth = -1;
+                pending.write(this);
+            }
+            depth--;
+            return super.endObject();
+        }
+
+        @Override
+        public JsonWriter beginArray() throws IOException {
+            if (droppedNesting >= 0) {
+                droppedNesting++;
+                return this;
+            }
+            return super.beginArray();
+        }
+
+        @Override
+        public JsonWriter endArray() throws IOException {
+            if (droppedNesting >= 0) {
+                return endDropped();
+            }
+            return super.endArray();
+        }
+
+        @Override
+        public JsonWriter value(String value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        @Override
+        public JsonWriter jsonValue(String value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.jsonValue(value);
+        }
+
+        @Override
+        public JsonWriter nullValue() throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.nullValue();
+        }
+
+        @Override
+        public JsonWriter value(boolean value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        @Override
+        public JsonWriter value(Boolean value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        @Override
+        public JsonWriter value(double value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        @Override
+        public JsonWriter value(long value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        @Override
+        public JsonWriter value(Number value) throws IOException {
+            return droppedNesting >= 0 ? dropValue() : super.value(value);
+        }
+
+        private JsonWriter dropValue() {
+            if (droppedNesting == 0) {
+                droppedNesting = -1;
+            }
+            return this;
+        }
+
+        private JsonWriter endDropped() {
+            droppedNesting--;
+            if (droppedNesting == 0) {
+                droppedNesting = -1;
+            }
+            return this;
+        }
+    }
+
     private void handleErrorResponse(@NonNull AffirmException e) {
         AffirmLog.e(e.toString());
 
         if (checkoutCallback != null) {
-            new Handler(Looper.getMainLooper()).post(() -> checkoutCallback.onError(e));
+            AffirmPlugins.get().dispatcher().postToMain(() -> checkoutCallback.onError(e));
         }
     }
 }
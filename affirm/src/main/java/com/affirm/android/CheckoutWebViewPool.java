@@ -0,0 +1,87 @@
+package com.affirm.android;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.affirm.android.AffirmConstants.HTTPS_PROTOCOL;
+import static com.affirm.android.AffirmConstants.TEXT_HTML;
+import static com.affirm.android.AffirmConstants.UTF_8;
+
+/**
+ * Keeps one off-screen {@link AffirmWebView} ready for the next checkout, so the checkout screen
+ * doesn't pay for the WebView construction. The warm WebView also preconnects to the Affirm
+ * hosts. A checkout WebView is never recycled, it is destroyed with its activity.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class CheckoutWebViewPool {
+
+    private static final String PRECONNECT_HTML = "<html><head>"
+            + "<link rel=\"preconnect\" href=\"%1$s\">"
+            + "<link rel=\"preconnect\" href=\"%2$s\">"
+            + "</head><body></body></html>";
+
+    @Nullable
+    private static AffirmWebView idleWebView;
+
+    private CheckoutWebViewPool() {
+    }
+
+    /**
+     * @return the warm WebView if there is one, a new WebView otherwise
+     */
+    @NonNull
+    static AffirmWebView acquire(@NonNull Context context) {
+        final AffirmWebView webView = idleWebView;
+        if (webView == null) {
+            return new AffirmWebView(context);
+        }
+        idleWebView = null;
+        ((MutableContextWrapper) webView.getContext()).setBaseContext(context);
+        // Back from the checkout must not go to the preconnect page
+        webView.clearHistory();
+        return webView;
+    }
+
+    static boolean isWarm() {
+        return idleWebView != null;
+    }
+
+    /**
+     * Create the warm WebView once the main thread is idle.
+     */
+    static void prewarm(@NonNull Context context) {
+        final Context appContext = context.getApplicationContext();
+        Looper.myQueue().addIdleHandler(() -> {
+            warm(appContext);
+            return false;
+        });
+    }
+
+    static void warm(@NonNull Context appContext) {
+        if (idleWebView == null) {
+            idleWebView = new AffirmWebView(new MutableContextWrapper(appContext));
+            preconnect(idleWebView);
+        }
+    }
+
+    static void reset() {
+        if (idleWebView != null) {
+            idleWebView.destroy();
+            idleWebView = null;
+        }
+    }
+
+    private static void preconnect(@NonNull AffirmWebView webView) {
+        final AffirmPlugins plugins = AffirmPlugins.get();
+        final String html = String.format(PRECONNECT_HTML,
+                HTTPS_PROTOCOL + plugins.baseUrl(),
+                HTTPS_PROTOCOL + plugins.baseJsUrl());
+        webView.loadDataWithBaseURL(HTTPS_PROTOCOL + plugins.baseUrl(), html,
+                TEXT_HTML, UTF_8, null);
+    }
+}
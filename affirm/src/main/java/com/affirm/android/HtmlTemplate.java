@@ -0,0 +1,207 @@
+package com.affirm.android;
+
+import android.content.res.Resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RawRes;
+
+import static com.affirm.android.AffirmConstants.AMOUNT;
+import static com.affirm.android.AffirmConstants.API_KEY;
+import static com.affirm.android.AffirmConstants.CANCELLED_CB_URL;
+import static com.affirm.android.AffirmConstants.CANCEL_URL;
+import static com.affirm.android.AffirmConstants.CONFIRM_CB_URL;
+import static com.affirm.android.AffirmConstants.JAVASCRIPT;
+import static com.affirm.android.AffirmConstants.MODAL_ID;
+import static com.affirm.android.AffirmConstants.PLACEHOLDER_END;
+import static com.affirm.android.AffirmConstants.PLACEHOLDER_START;
+import static com.affirm.android.AffirmConstants.REMOTE_CSS_URL;
+import static com.affirm.android.AffirmConstants.URL;
+import static com.affirm.android.AffirmConstants.URL2;
+
+/**
+ * A html template parsed once into literal and placeholder segments, rendered in a single pass.
+ * Templates loaded from raw resources are cached for the lifetime of the process.
+ */
+final class HtmlTemplate {
+
+    enum Escaping {
+        // Inserted as is, e.g. html fragments and json objects
+        RAW,
+        // Inside a html attribute value
+        HTML,
+        // Inside a double or single quoted javascript string
+        JS_STRING
+    }
+
+    private static final Map<String, Escaping> ESCAPING = new HashMap<>();
+
+    static {
+        ESCAPING.put(API_KEY, Escaping.JS_STRING);
+        ESCAPING.put(JAVASCRIPT, Escaping.JS_STRING);
+        ESCAPING.put(AMOUNT, Escaping.JS_STRING);
+        ESCAPING.put(MODAL_ID, Escaping.JS_STRING);
+        ESCAPING.put(CANCEL_URL, Escaping.JS_STRING);
+        ESCAPING.put(URL, Escaping.JS_STRING);
+        ESCAPING.put(CONFIRM_CB_URL, Escaping.JS_STRING);
+        ESCAPING.put(CANCELLED_CB_URL, Escaping.JS_STRING);
+        ESCAPING.put(URL2, Escaping.HTML);
+        ESCAPING.put(REMOTE_CSS_URL, Escaping.HTML);
+    }
+
+    private static final Map<Integer, HtmlTemplate> cache = new HashMap<>();
+
+    // literals.length == placeholders.length + 1
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private HtmlTemplate(String[] literals, String[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    @NonNull
+    static HtmlTemplate get(@NonNull Resources resources, @RawRes int templateRes) {
+        synchronized (cache) {
+            HtmlTemplate template = cache.get(templateRes);
+            if (template == null) {
+                try (InputStream ins = resources.openRawResource(templateRes)) {
+                    template = compile(AffirmUtils.readInputStream(ins));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                cache.put(templateRes, template);
+            }
+            return template;
+        }
+    }
+
+    @NonNull
+    static HtmlTemplate compile(@NonNull String text) {
+        final List<String> literals = new ArrayList<>();
+        final List<String> placeholders = new ArrayList<>();
+
+        int position = 0;
+        int literalStart = 0;
+        while (true) {
+            final int start = text.indexOf(PLACEHOLDER_START, position);
+            if (start == -1) {
+                break;
+            }
+            final int end = text.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+            if (end == -1) {
+                break;
+            }
+            literals.add(text.substring(literalStart, start));
+            placeholders.add(text.substring(start + PLACEHOLDER_START.length(), end));
+            position = end + PLACEHOLDER_END.length();
+            literalStart = position;
+        }
+        literals.add(text.substring(literalStart));
+
+        return new HtmlTemplate(
+                literals.toArray(new String[0]),
+                placeholders.toArray(new String[0])
+        );
+    }
+
+    /**
+     * Placeholders without a value are left untouched.
+     */
+    @NonNull
+    String render(@NonNull Map<String, String> values) {
+        int capacity = literalLength;
+        for (String placeholder : placeholders) {
+            final String value = values.get(placeholder);
+            capacity += value != null ? value.length()
+                    : placeholder.length() + PLACEHOLDER_START.length() + PLACEHOLDER_END.length();
+        }
+
+        final StringBuilder builder = new StringBuilder(capacity);
+        for (int i = 0; i < placeholders.length; i++) {
+            builder.append(literals[i]);
+            final String placeholder = placeholders[i];
+            final String value = values.get(placeholder);
+            if (value == null) {
+                builder.append(PLACEHOLDER_START).append(placeholder).append(PLACEHOLDER_END);
+            } else {
+                final Escaping escaping = ESCAPING.get(placeholder);
+                appendEscaped(builder, value, escaping != null ? escaping : Escaping.RAW);
+            }
+        }
+        builder.append(literals[literals.length - 1]);
+        return builder.toString();
+    }
+
+    private static void appendEscaped(@NonNull StringBuilder builder,
+                                      @NonNull String value,
+                                      @NonNull Escaping escaping) {
+        if (escaping == Escaping.RAW) {
+            builder.append(value);
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (escaping == Escaping.HTML) {
+                switch (c) {
+                    case '&':
+                        builder.append("&amp;");
+                        break;
+                    case '<':
+                        builder.append("&lt;");
+                        break;
+                    case '>':
+                        builder.append("&gt;");
+                        break;
+                    case '"':
+                        builder.append("&quot;");
+                        break;
+                    case '\'':
+                        builder.append("&#39;");
+                        break;
+                    default:
+                        builder.append(c);
+                        break;
+                }
+            } else {
+                switch (c) {
+                    case '\\':
+                        builder.append("\\\\");
+                        break;
+                    case '"':
+                        builder.append("\\\"");
+                        break;
+                    case '\'':
+                        builder.append("\\'");
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    case '\r':
+                        builder.append("\\r");
+                        break;
+                    case '<':
+                        // Keeps "</script>" from closing the script element
+                        builder.append("\\u003C");
+                        break;
+                    default:
+                        builder.append(c);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -47,6 +47,8 @@ public class LifeListenerFragment extends Fragment {
         super.onStop();
         isStarted = false;
         lifecycle.onStop();
+        // Once per screen, whatever the number of promotion buttons listening to it
+        AffirmPlugins.get().flushTracker();
     }
 
     @Override
@@ -6,8 +6,6 @@ import android.os.Bundle;
 
 import com.affirm.android.exception.ConnectionException;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 import androidx.annotation.NonNull;
@@ -111,15 +109,7 @@ public class ModalActivity extends AffirmActivity implements ModalWebViewClient.
     }
 
     private String initialHtml() {
-        String html;
-        try {
-            final InputStream ins = getResources().openRawResource(type.templateRes);
-            html = AffirmUtils.readInputStream(ins);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return AffirmUtils.replacePlaceholders(html, map);
+        return HtmlTemplate.get(getResources(), type.templateRes).render(map);
     }
 
     @Override
@@ -0,0 +1,74 @@
+package com.affirm.android;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Rounds promo amounts to a configurable granularity so that close amounts share one promo
+ * request and one cache entry. Monthly payments are linear in the financed amount, so the first
+ * dollar figure of the bucketed promo message is scaled back to the actual amount locally.
+ */
+final class PromoAmountBucketing {
+
+    private static final Pattern DOLLAR_AMOUNT =
+            Pattern.compile("\\$((?:\\d{1,3}(?:,\\d{3})+)|\\d+)(\\.\\d{2})?");
+
+    private PromoAmountBucketing() {
+    }
+
+    /**
+     * Amounts below one granularity step are not bucketed, rounding them up would change the
+     * promo tier of small carts.
+     *
+     * @param cents       the actual amount, in cents
+     * @param granularity the bucket size in cents, 0 or less to disable bucketing
+     * @return the amount the promo should be requested for, in cents
+     */
+    static int bucketCents(int cents, int granularity) {
+        if (granularity <= 1 || cents < granularity) {
+            return cents;
+        }
+        // Integer rounding, a float loses cents above $167,772.16
+        final long bucket = ((long) cents + granularity / 2) / granularity * granularity;
+        return bucket <= Integer.MAX_VALUE ? (int) bucket : cents;
+    }
+
+    /**
+     * Rewrite the first dollar figure of a promo message written for {@code bucketCents} so it
+     * matches {@code actualCents}. The message is returned unchanged when the amounts are equal
+     * or when it contains no dollar figure.
+     */
+    @NonNull
+    static String rescale(@NonNull String text, int bucketCents, int actualCents) {
+        if (bucketCents == actualCents || bucketCents <= 0) {
+            return text;
+        }
+
+        final Matcher matcher = DOLLAR_AMOUNT.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+
+        final boolean hasCents = matcher.group(2) != null;
+        final boolean grouped = matcher.group(1).contains(",");
+        final String digits = matcher.group(1).replace(",", "")
+                + (hasCents ? matcher.group(2) : "");
+        final BigDecimal scaled = new BigDecimal(digits)
+                .multiply(BigDecimal.valueOf(actualCents))
+                .divide(BigDecimal.valueOf(bucketCents), hasCents ? 2 : 0, RoundingMode.HALF_UP);
+
+        final String format = (grouped ? "$%," : "$%") + (hasCents ? ".2f" : "d");
+        final String formatted = hasCents
+                ? String.format(Locale.US, format, scaled)
+                : String.format(Locale.US, format, scaled.longValue());
+
+        return text.substring(0, matcher.start())
+                + formatted
+                + text.substring(matcher.end());
+    }
+}
@@ -0,0 +1,351 @@
+package com.affirm.android;
+
+import com.affirm.android.exception.APIException;
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.PromoPageType;
+import com.affirm.android.model.PromoResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.affirm.android.AffirmColor.AFFIRM_COLOR_TYPE_BLUE;
+import static com.affirm.android.AffirmLogoType.AFFIRM_DISPLAY_TYPE_LOGO;
+
+/**
+ * Loads the promo messages for many amounts at once, e.g. for a list or grid of products.
+ * Entries resolving to the same promo are fetched once, and at most {@code maxConcurrency}
+ * requests are in flight at the same time. Results are delivered per key on the callback
+ * executor of the configuration, the main thread by default.
+ */
+public final class PromoBatch {
+
+    static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    public interface Callback {
+        void onPromoLoaded(@NonNull String key,
+                           @NonNull String promo,
+                           @NonNull String htmlPromo,
+                           boolean showPrequal);
+
+        void onPromoFailed(@NonNull String key, @NonNull AffirmException exception);
+    }
+
+    private static final class Entry {
+        final String key;
+        final String promoId;
+        final PromoPageType pageType;
+        final int actualCents;
+
+        Entry(String key, String promoId, PromoPageType pageType, float amount) {
+            this.key = key;
+            this.promoId = promoId;
+            this.pageType = pageType;
+            this.actualCents = AffirmUtils.decimalDollarsToIntegerCents(amount);
+        }
+    }
+
+    // An entry as requested by one load, the bucketing may differ between loads
+    private static final class EntryLoad {
+        final Entry entry;
+        final int requestCents;
+
+        EntryLoad(Entry entry, int requestCents) {
+            this.entry = entry;
+            this.requestCents = requestCents;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final boolean showCta;
+    private final AffirmColor affirmColor;
+    private final AffirmLogoType affirmLogoType;
+    private final int maxConcurrency;
+
+    private final Object lock = new Object();
+    private final Map<String, List<EntryLoad>> loadsByUrl = new LinkedHashMap<>();
+    private final Map<String, PromoFetcher.Subscription> subscriptions = new HashMap<>();
+    private final Deque<String> queue = new ArrayDeque<>();
+    private Callback callback;
+    private boolean cancelled;
+    private int generation;
+
+    private interface Delivery {
+        void deliver(@NonNull Callback callback);
+    }
+
+    private PromoBatch(Builder builder) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(builder.entries));
+        this.showCta = builder.showCta;
+        this.affirmColor = builder.affirmColor;
+        this.affirmLogoType = builder.affirmLogoType;
+        this.maxConcurrency = builder.maxConcurrency;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start loading every promo of this batch. Calling it again restarts the batch.
+     *
+     * @param callback receives the result of every key, on the callback executor
+     */
+    public void load(@NonNull Callback callback) {
+        AffirmUtils.requireNonNull(callback, "PromoBatch.Callback cannot be null");
+
+        final List<Runnable> deliveries;
+        synchronized (lock) {
+            cancelSubscriptions();
+            loadsByUrl.clear();
+            queue.clear();
+            cancelled = false;
+            generation++;
+            this.callback = callback;
+
+            for (Entry entry : entries) {
+                final int requestCents = PromoRequest.requestCents(entry.actualCents);
+                final String url = PromoRequest.promoUrl(entry.promoId, entry.pageType,
+                        requestCents, showCta, affirmColor, affirmLogoType);
+                List<EntryLoad> urlLoads = loadsByUrl.get(url);
+                if (urlLoads == null) {
+                    urlLoads = new ArrayList<>();
+                    loadsByUrl.put(url, urlLoads);
+                    queue.add(url);
+                }
+                urlLoads.add(new EntryLoad(entry, requestCents));
+            }
+
+            deliveries = startNext();
+        }
+        dispatch(deliveries);
+    }
+
+    /**
+     * Cancel the pending requests. No more results are delivered after this call.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            queue.clear();
+            cancelSubscriptions();
+        }
+    }
+
+    private void cancelSubscriptions() {
+        for (PromoFetcher.Subscription subscription : subscriptions.values()) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+    }
+
+    // Must be called with the lock held. The cached results are returned rather than delivered,
+    // to be dispatched once the lock is released: a direct callback executor would run the
+    // callback with the lock held otherwise.
+    @NonNull
+    private List<Runnable> startNext() {
+        final PromoCache promoCache = AffirmPlugins.get().promoCache();
+        final PromoFetcher promoFetcher = AffirmPlugins.get().promoFetcher();
+        final List<Runnable> deliveries = new ArrayList<>();
+        final int requestGeneration = generation;
+
+        while (!cancelled && subscriptions.size() < maxConcurrency && !queue.isEmpty()) {
+            final String url = queue.poll();
+            final PromoCache.Entry cached = promoCache.get(url);
+
+            if (cached != null) {
+                deliveries.add(() -> deliverSuccess(url, cached.response, requestGeneration));
+                if (promoCache.isFresh(cached)) {
+                    continue;
+                }
+            }
+
+            final PromoResponse staleResponse = cached != null ? cached.response : null;
+            subscriptions.put(url, promoFetcher.fetch(url, new PromoFetcher.Listener() {
+                @Override
+                public void onSuccess(@NonNull PromoResponse promoResponse) {
+                    if (!promoResponse.equals(staleResponse)) {
+                        deliverSuccess(url, promoResponse, requestGeneration);
+                    }
+                    onComplete(url, requestGeneration);
+                }
+
+                @Override
+                public void onFailure(@NonNull Exception exception) {
+                    if (staleResponse == null) {
+                        deliverFailure(url, exception, requestGeneration);
+                    }
+                    onComplete(url, requestGeneration);
+                }
+            }));
+        }
+        return deliveries;
+    }
+
+    private static void dispatch(@NonNull List<Runnable> deliveries) {
+        for (Runnable delivery : deliveries) {
+            delivery.run();
+        }
+    }
+
+    private void onComplete(@NonNull String url, int requestGeneration) {
+        final List<Runnable> deliveries;
+        synchronized (lock) {
+            if (requestGeneration != generation) {
+                return;
+            }
+            subscriptions.remove(url);
+            deliveries = startNext();
+        }
+        dispatch(deliveries);
+    }
+
+    private void deliverSuccess(@NonNull String url,
+                                @NonNull PromoResponse promoResponse,
+                                int requestGeneration) {
+        final List<EntryLoad> urlLoads = loadsFor(url, requestGeneration);
+        if (urlLoads == null) {
+            return;
+        }
+        final String promo = promoResponse.promo().ala();
+        final String htmlPromo = promoResponse.promo().htmlAla();
+        final boolean showPrequal = PromoRequest.showPrequal(promoResponse);
+        post(requestGeneration, target -> {
+            for (EntryLoad load : urlLoads) {
+                final Entry entry = load.entry;
+                target.onPromoLoaded(entry.key,
+                        PromoAmountBucketing.rescale(promo, load.requestCents, entry.actualCents),
+                        PromoAmountBucketing.rescale(htmlPromo, load.requestCents,
+                                entry.actualCents),
+                        showPrequal);
+            }
+        });
+    }
+
+    private void deliverFailure(@NonNull String url, @NonNull Exception e, int requestGeneration) {
+        final List<EntryLoad> urlLoads = loadsFor(url, requestGeneration);
+        if (urlLoads == null) {
+            return;
+        }
+        AffirmLog.e(e.toString());
+        final AffirmException exception = new APIException(e.getMessage(), e);
+        post(requestGeneration, target -> {
+            for (EntryLoad load : urlLoads) {
+                target.onPromoFailed(load.entry.key, exception);
+            }
+        });
+    }
+
+    // The entries of the url, null if the load that requested it was cancelled or replaced
+    @Nullable
+    private List<EntryLoad> loadsFor(@NonNull String url, int requestGeneration) {
+        synchronized (lock) {
+            if (cancelled || requestGeneration != generation) {
+                return null;
+            }
+            final List<EntryLoad> urlLoads = loadsByUrl.get(url);
+            return urlLoads != null ? new ArrayList<>(urlLoads) : null;
+        }
+    }
+
+    private void post(int requestGeneration, @NonNull final Delivery delivery) {
+        final Callback target;
+        synchronized (lock) {
+            target = callback;
+        }
+        AffirmPlugins.get().dispatcher().dispatchCallback(() -> {
+            synchronized (lock) {
+                if (cancelled || requestGeneration != generation) {
+                    return;
+                }
+            }
+            delivery.deliver(target);
+        });
+    }
+
+    public static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+        private boolean showCta;
+        private AffirmColor affirmColor = AFFIRM_COLOR_TYPE_BLUE;
+        private AffirmLogoType affirmLogoType = AFFIRM_DISPLAY_TYPE_LOGO;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+        private Builder() {
+        }
+
+        /**
+         * @param key    your identifier of the promo, e.g. a product id
+         * @param amount (Float) eg 112.02 as $112 and ¢2
+         * @return The same builder, for easy chaining.
+         */
+        public Builder add(@NonNull String key, float amount) {
+            return add(key, null, null, amount);
+        }
+
+        /**
+         * @param key      your identifier of the promo, e.g. a product id
+         * @param promoId  the client's modal id
+         * @param pageType need to use one of "banner, cart, category, homepage, landing,
+         *                 payment, product, search"
+         * @param amount   (Float) eg 112.02 as $112 and ¢2
+         * @return The same builder, for easy chaining.
+         */
+        public Builder add(@NonNull String key,
+                           @Nullable String promoId,
+                           @Nullable PromoPageType pageType,
+                           float amount) {
+            AffirmUtils.requireNonNull(key, "key cannot be null");
+            entries.add(new Entry(key, promoId, pageType, amount));
+            return this;
+        }
+
+        /**
+         * @param showCta whether need to show cta
+         * @return The same builder, for easy chaining.
+         */
+        public Builder setShowCta(boolean showCta) {
+            this.showCta = showCta;
+            return this;
+        }
+
+        /**
+         * Set the logo style of the promo messages, it's optional
+         *
+         * @param affirmColor    the color of the logo
+         * @param affirmLogoType the type of the logo
+         * @return The same builder, for easy chaining.
+         */
+        public Builder setLocalStyling(@NonNull AffirmColor affirmColor,
+                                       @NonNull AffirmLogoType affirmLogoType) {
+            this.affirmColor = affirmColor;
+            this.affirmLogoType = affirmLogoType;
+            return this;
+        }
+
+        /**
+         * Set the max number of promo requests in flight at the same time, it's optional
+         *
+         * @param maxConcurrency the max number of concurrent requests
+         * @return The same builder, for easy chaining.
+         */
+        public Builder setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public PromoBatch build() {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("maxConcurrency must be positive");
+            }
+            return new PromoBatch(this);
+        }
+    }
+}
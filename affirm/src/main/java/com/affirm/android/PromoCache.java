@@ -0,0 +1,68 @@
+package com.affirm.android;
+
+import android.os.SystemClock;
+
+import com.affirm.android.model.PromoResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A bounded LRU cache of promo responses keyed on the full promo query. Entries younger than the
+ * ttl are fresh and can be used without touching the network, older entries are stale and should
+ * be shown while a new one is fetched in the background.
+ */
+final class PromoCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 64;
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    static final class Entry {
+        @NonNull
+        final PromoResponse response;
+        final long storedAt;
+
+        Entry(@NonNull PromoResponse response, long storedAt) {
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    PromoCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Nullable
+    synchronized Entry get(@NonNull String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(@NonNull String key, @NonNull PromoResponse response) {
+        entries.put(key, new Entry(response, now()));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    boolean isFresh(@NonNull Entry entry) {
+        return now() - entry.storedAt < ttlMillis;
+    }
+
+    private static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
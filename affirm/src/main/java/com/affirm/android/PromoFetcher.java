@@ -0,0 +1,230 @@
+package com.affirm.android;
+
+import androidx.annotation.NonNull;
+
+import com.affirm.android.exception.APIException;
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.PromoResponse;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
+import static com.affirm.android.AffirmTracker.TrackingEvent.NETWORK_ERROR;
+import static com.affirm.android.AffirmTracker.TrackingLevel.ERROR;
+import static com.affirm.android.AffirmTracker.createTrackingNetworkJsonObj;
+
+/**
+ * Fetches promos, sharing a single network call between all the requests for the same url that
+ * are in flight at the same time. The network call is only cancelled once every subscriber has
+ * been cancelled.
+ */
+final class PromoFetcher {
+
+    // Promo responses are a few KB, anything much larger is not a promo
+    static final long MAX_RESPONSE_BYTES = 256 * 1024;
+
+    interface Listener {
+        void onSuccess(@NonNull PromoResponse promoResponse);
+
+        void onFailure(@NonNull Exception exception);
+    }
+
+    private final Object lock = new Object();
+    private final Map<String, InFlight> inFlights = new HashMap<>();
+
+    @NonNull
+    Subscription fetch(@NonNull String url, @NonNull Listener listener) {
+        synchronized (lock) {
+            InFlight inFlight = inFlights.get(url);
+            final boolean start = inFlight == null;
+            if (start) {
+                inFlight = new InFlight(url);
+                inFlights.put(url, inFlight);
+            }
+            final Subscription subscription = new Subscription(inFlight, listener);
+            inFlight.subscriptions.add(subscription);
+            if (start) {
+                inFlight.start();
+            }
+            return subscription;
+        }
+    }
+
+    final class Subscription {
+
+        private final InFlight inFlight;
+        private final Listener listener;
+        // Guarded by the lock
+        private boolean canceled;
+
+        private Subscription(InFlight inFlight, Listener listener) {
+            this.inFlight = inFlight;
+            this.listener = listener;
+        }
+
+        void cancel() {
+            synchronized (lock) {
+                canceled = true;
+                if (inFlight.subscriptions.remove(this) && inFlight.subscriptions.isEmpty()) {
+                    if (inFlights.get(inFlight.url) == inFlight) {
+                        inFlights.remove(inFlight.url);
+                    }
+                    inFlight.canceled = true;
+                    AffirmTimeoutPolicy.cancel(inFlight.call);
+                }
+            }
+        }
+
+        // Checked when delivering, it may have been cancelled since the call completed
+        private boolean isCanceled() {
+            synchronized (lock) {
+                return canceled;
+            }
+        }
+
+        private void notifySuccess(@NonNull PromoResponse promoResponse) {
+            if (!isCanceled()) {
+                listener.onSuccess(promoResponse);
+            }
+        }
+
+        private void notifyFailure(@NonNull Exception e) {
+            if (!isCanceled()) {
+                listener.onFailure(e);
+            }
+        }
+    }
+
+    private final class InFlight implements Callback {
+
+        private final String url;
+        private final List<Subscription> subscriptions = new ArrayList<>();
+        private Call call;
+        // Set once every subscriber has cancelled, guarded by the lock. The call is also
+        // cancelled when its deadline expires, so call.isCanceled() can't tell them apart
+        private boolean canceled;
+
+        InFlight(String url) {
+            this.url = url;
+        }
+
+        void start() {
+            call = AffirmPlugins.get().restClient().getCallForRequest(
+                    new AffirmHttpRequest.Builder()
+                            .setUrl(url)
+                            .setMethod(AffirmHttpRequest.Method.GET)
+                            .setTag(TAG_GET_NEW_PROMO)
+                            .build()
+            );
+            call.enqueue(this);
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+            ResponseBody responseBody = response.body();
+
+            if (response.isSuccessful()) {
+                if (responseBody != null) {
+                    final PromoResponse promoResponse;
+                    try {
+                        promoResponse = AffirmHttpClient.parseResponseBody(
+                                responseBody,
+                                PromoResponse.class,
+                                MAX_RESPONSE_BYTES
+                        );
+                    } catch (IOException e) {
+                        if (isCanceled()) {
+                            complete();
+                        } else {
+                            notifyFailure(new APIException("Failed to read the promo", e));
+                        }
+                        return;
+                    }
+
+                    if (promoResponse == null) {
+                        notifyFailure(
+                                new APIException("Response was success, but body was empty", null)
+                        );
+                        return;
+                    }
+
+                    AffirmPlugins.get().promoCache().put(url, promoResponse);
+                    for (Subscription subscription : complete()) {
+                        subscription.notifySuccess(promoResponse);
+                    }
+                } else {
+                    notifyFailure(
+                            new APIException("Response was success, but body was null", null)
+                    );
+                }
+            } else {
+                AffirmException affirmException =
+                        AffirmHttpClient.createExceptionAndTrackFromResponse(
+                                call.request(),
+                                response,
+                                responseBody
+                        );
+
+                if (affirmException == null) {
+                    affirmException = new APIException("Response was not successful", null);
+                }
+
+                notifyFailure(affirmException);
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            if (isCanceled()) {
+                complete();
+                return;
+            }
+            // Not sent, the failures that opened the circuit were tracked already
+            if (!(e instanceof AffirmCircuitBreaker.CircuitOpenException)) {
+                AffirmTracker.track(
+                        NETWORK_ERROR,
+                        ERROR,
+                        createTrackingNetworkJsonObj(
+                                call.request(),
+                                null
+                        )
+                );
+            }
+            notifyFailure(e);
+        }
+
+        private boolean isCanceled() {
+            synchronized (lock) {
+                return canceled;
+            }
+        }
+
+        private void notifyFailure(@NonNull Exception e) {
+            for (Subscription subscription : complete()) {
+                subscription.notifyFailure(e);
+            }
+        }
+
+        private List<Subscription> complete() {
+            synchronized (lock) {
+                if (inFlights.get(url) == this) {
+                    inFlights.remove(url);
+                }
+                List<Subscription> result = new ArrayList<>(subscriptions);
+                subscriptions.clear();
+                return result;
+            }
+        }
+    }
+}
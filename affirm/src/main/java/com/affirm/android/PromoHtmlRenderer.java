@@ -0,0 +1,399 @@
+package com.affirm.android;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.Editable;
+import android.text.Html;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.HtmlCompat;
+
+import static com.affirm.android.AffirmConstants.LOGO_PLACEHOLDER;
+
+/**
+ * Renders the html promo message into a {@link Spanned}, so html styled promos can be shown in a
+ * TextView instead of a WebView. The markup is parsed by {@link HtmlCompat}, then the class rules
+ * of the style sheet and of the {@code <style>} blocks are applied: color, font-weight and
+ * font-style of simple {@code .class} selectors, which is what remote_promo.css uses. Elements
+ * with an {@code affirm-logo} class and the {@code {affirm_logo}} placeholder are replaced with
+ * the Affirm logo.
+ */
+final class PromoHtmlRenderer {
+
+    interface LogoSpanFactory {
+        /**
+         * @return a new span drawing the logo
+         */
+        @NonNull
+        Object createLogoSpan();
+    }
+
+    private static final Set<String> LOGO_CLASSES =
+            new HashSet<>(Arrays.asList("affirm-logo", "__affirm-logo"));
+    private static final String OBJECT_REPLACEMENT = "\uFFFC";
+    // An unknown tag, so the tag handler gets to see the parsing of the rest of the markup
+    private static final String HOOK_TAG = "affirm-promo";
+
+    private PromoHtmlRenderer() {
+    }
+
+    @NonNull
+    static Spanned render(@NonNull String html,
+                          @Nullable String css,
+                          @Nullable LogoSpanFactory logoSpanFactory) {
+        final ClassTagHandler tagHandler = new ClassTagHandler();
+        final SpannableStringBuilder builder = new SpannableStringBuilder(HtmlCompat.fromHtml(
+                "<" + HOOK_TAG + "/>" + html, HtmlCompat.FROM_HTML_MODE_LEGACY, null,
+                tagHandler));
+
+        final StringBuilder styleSheet = new StringBuilder(css != null ? css : "");
+        styleSheet.append('\n').append(tagHandler.styleBlocks);
+        applyClassRules(builder, parseStyleSheet(styleSheet));
+        replaceLogoElements(builder, logoSpanFactory);
+        replaceLogoPlaceholder(builder, logoSpanFactory);
+        trim(builder);
+        return builder;
+    }
+
+    /**
+     * Marks the text of an element with classes. Html drops the class attribute, the marks keep
+     * it until the class rules are applied.
+     */
+    private static final class ClassMark {
+        final String[] classes;
+        final boolean logo;
+
+        ClassMark(String[] classes, boolean logo) {
+            this.classes = classes;
+            this.logo = logo;
+        }
+    }
+
+    private static final class ClassTagHandler implements Html.TagHandler {
+        final StringBuilder styleBlocks = new StringBuilder();
+
+        @Override
+        public void handleTag(boolean opening, String tag, Editable output, XMLReader xmlReader) {
+            if (opening && HOOK_TAG.equalsIgnoreCase(tag)) {
+                xmlReader.setContentHandler(
+                        new ClassContentHandler(xmlReader.getContentHandler(), output,
+                                styleBlocks));
+            }
+        }
+    }
+
+    /**
+     * Sees the elements before Html does. The parser balances the elements, so every start has
+     * its end even for malformed markup.
+     */
+    private static final class ClassContentHandler implements ContentHandler {
+        private final ContentHandler delegate;
+        private final Editable output;
+        private final StringBuilder styleBlocks;
+
+        // The elements opened after the hook, with where their text starts
+        private final Deque<OpenElement> elements = new ArrayDeque<>();
+        private int styleDepth;
+        private int logoDepth;
+
+        ClassContentHandler(ContentHandler delegate, Editable output, StringBuilder styleBlocks) {
+            this.delegate = delegate;
+            this.output = output;
+            this.styleBlocks = styleBlocks;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+                throws SAXException {
+            if ("style".equalsIgnoreCase(localName)) {
+                styleDepth++;
+                return;
+            }
+            delegate.startElement(uri, localName, qName, atts);
+
+            final String classAttribute = atts.getValue("class");
+            final String[] classes = classAttribute != null
+                    ? classAttribute.trim().split("\\s+") : new String[0];
+            boolean logo = false;
+            for (String cssClass : classes) {
+                logo |= LOGO_CLASSES.contains(cssClass);
+            }
+            // Only the outermost logo element is replaced
+            final boolean outermostLogo = logo && logoDepth == 0;
+            if (logo) {
+                logoDepth++;
+            }
+            elements.push(new OpenElement(output.length(), classes, logo, outermostLogo));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if ("style".equalsIgnoreCase(localName)) {
+                styleDepth--;
+                return;
+            }
+            delegate.endElement(uri, localName, qName);
+            if (elements.isEmpty()) {
+                // Opened before the hook
+                return;
+            }
+
+            final OpenElement element = elements.pop();
+            if (element.logo) {
+                logoDepth--;
+            }
+            if (element.classes.length > 0) {
+                output.setSpan(new ClassMark(element.classes, element.outermostLogo),
+                        element.start, output.length(), Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (styleDepth > 0) {
+                styleBlocks.append(ch, start, length).append('\n');
+                return;
+            }
+            delegate.characters(ch, start, length);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            delegate.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            delegate.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            delegate.endDocument();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            delegate.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            delegate.endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            delegate.ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            delegate.processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            delegate.skippedEntity(name);
+        }
+    }
+
+    private static final class OpenElement {
+        final int start;
+        final String[] classes;
+        final boolean logo;
+        final boolean outermostLogo;
+
+        OpenElement(int start, String[] classes, boolean logo, boolean outermostLogo) {
+            this.start = start;
+            this.classes = classes;
+            this.logo = logo;
+            this.outermostLogo = outermostLogo;
+        }
+    }
+
+    private static void applyClassRules(@NonNull SpannableStringBuilder builder,
+                                        @NonNull Map<String, Map<String, String>> classRules) {
+        for (ClassMark mark : builder.getSpans(0, builder.length(), ClassMark.class)) {
+            final int start = builder.getSpanStart(mark);
+            final int end = builder.getSpanEnd(mark);
+            if (start >= end) {
+                continue;
+            }
+            for (String cssClass : mark.classes) {
+                final Map<String, String> rule = classRules.get(cssClass);
+                if (rule != null) {
+                    applyRule(builder, rule, start, end);
+                }
+            }
+        }
+    }
+
+    private static void applyRule(@NonNull SpannableStringBuilder builder,
+                                  @NonNull Map<String, String> rule,
+                                  int start,
+                                  int end) {
+        final int flags = Spannable.SPAN_EXCLUSIVE_EXCLUSIVE;
+
+        final Integer color = parseColor(rule.get("color"));
+        if (color != null) {
+            builder.setSpan(new ForegroundColorSpan(color), start, end, flags);
+        }
+
+        final boolean bold = isBold(rule.get("font-weight"));
+        final boolean italic = "italic".equals(rule.get("font-style"))
+                || "oblique".equals(rule.get("font-style"));
+        if (bold || italic) {
+            final int typeface = bold && italic ? Typeface.BOLD_ITALIC
+                    : bold ? Typeface.BOLD : Typeface.ITALIC;
+            builder.setSpan(new StyleSpan(typeface), start, end, flags);
+        }
+    }
+
+    private static void replaceLogoElements(@NonNull SpannableStringBuilder builder,
+                                            @Nullable LogoSpanFactory logoSpanFactory) {
+        for (ClassMark mark : builder.getSpans(0, builder.length(), ClassMark.class)) {
+            final int start = builder.getSpanStart(mark);
+            int end = builder.getSpanEnd(mark);
+            builder.removeSpan(mark);
+            // Without a logo to draw, the text of the logo element is kept
+            if (!mark.logo || logoSpanFactory == null) {
+                continue;
+            }
+            // Html may have ended a block element with line breaks, they are kept
+            while (end > start && builder.charAt(end - 1) == '\n') {
+                end--;
+            }
+            builder.replace(start, end, OBJECT_REPLACEMENT);
+            builder.setSpan(logoSpanFactory.createLogoSpan(), start, start + 1,
+                    Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    private static void replaceLogoPlaceholder(@NonNull SpannableStringBuilder builder,
+                                               @Nullable LogoSpanFactory logoSpanFactory) {
+        int index = builder.toString().indexOf(LOGO_PLACEHOLDER);
+        while (index != -1) {
+            if (logoSpanFactory != null) {
+                builder.replace(index, index + LOGO_PLACEHOLDER.length(), OBJECT_REPLACEMENT);
+                builder.setSpan(logoSpanFactory.createLogoSpan(), index, index + 1,
+                        Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            } else {
+                builder.delete(index, index + LOGO_PLACEHOLDER.length());
+            }
+            index = builder.toString().indexOf(LOGO_PLACEHOLDER, index);
+        }
+    }
+
+    @NonNull
+    private static Map<String, Map<String, String>> parseStyleSheet(@NonNull CharSequence css) {
+        final Map<String, Map<String, String>> rules = new HashMap<>();
+        for (String block : css.toString().split("\\}")) {
+            final int brace = block.indexOf('{');
+            if (brace == -1) {
+                continue;
+            }
+            final Map<String, String> declarations =
+                    parseDeclarations(block.substring(brace + 1));
+            for (String selector : block.substring(0, brace).split(",")) {
+                final String trimmed = selector.trim();
+                // Only simple class selectors are supported
+                if (trimmed.matches("\\.[\\w-]+")) {
+                    final String cssClass = trimmed.substring(1);
+                    Map<String, String> rule = rules.get(cssClass);
+                    if (rule == null) {
+                        rule = new HashMap<>();
+                        rules.put(cssClass, rule);
+                    }
+                    rule.putAll(declarations);
+                }
+            }
+        }
+        return rules;
+    }
+
+    @NonNull
+    private static Map<String, String> parseDeclarations(@NonNull String declarations) {
+        final Map<String, String> style = new HashMap<>();
+        for (String declaration : declarations.split(";")) {
+            final int colon = declaration.indexOf(':');
+            if (colon == -1) {
+                continue;
+            }
+            final String property = declaration.substring(0, colon).trim()
+                    .toLowerCase(Locale.US);
+            final String value = declaration.substring(colon + 1)
+                    .replace("!important", "")
+                    .trim()
+                    .toLowerCase(Locale.US);
+            if (!property.isEmpty() && !value.isEmpty()) {
+                style.put(property, value);
+            }
+        }
+        return style;
+    }
+
+    @Nullable
+    static Integer parseColor(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        String color = value.trim();
+        if (color.length() == 4 && color.charAt(0) == '#') {
+            // Expand the #rgb shorthand
+            color = "#" + color.charAt(1) + color.charAt(1) + color.charAt(2) + color.charAt(2)
+                    + color.charAt(3) + color.charAt(3);
+        }
+        try {
+            return Color.parseColor(color);
+        } catch (IllegalArgumentException e) {
+            AffirmLog.v("Unsupported promo color: " + value);
+            return null;
+        }
+    }
+
+    private static boolean isBold(@Nullable String value) {
+        if (value == null) {
+            return false;
+        }
+        if ("bold".equals(value) || "bolder".equals(value)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(value) >= 600;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void trim(@NonNull SpannableStringBuilder builder) {
+        while (builder.length() > 0 && Character.isWhitespace(builder.charAt(0))) {
+            builder.delete(0, 1);
+        }
+        while (builder.length() > 0
+                && Character.isWhitespace(builder.charAt(builder.length() - 1))) {
+            builder.delete(builder.length() - 1, builder.length());
+        }
+    }
+}
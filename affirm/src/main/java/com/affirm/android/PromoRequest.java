@@ -1,32 +1,15 @@
 package com.affirm.android;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.affirm.android.exception.APIException;
-import com.affirm.android.exception.AffirmException;
 import com.affirm.android.model.PromoPageType;
 import com.affirm.android.model.PromoResponse;
-import com.google.gson.Gson;
-
-import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
 import java.util.Locale;
 
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.Response;
-import okhttp3.ResponseBody;
-
 import static com.affirm.android.AffirmConstants.PROMO_PATH;
-import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
-import static com.affirm.android.AffirmTracker.TrackingEvent.NETWORK_ERROR;
-import static com.affirm.android.AffirmTracker.TrackingLevel.ERROR;
-import static com.affirm.android.AffirmTracker.createTrackingNetworkJsonObj;
 
 class PromoRequest implements AffirmRequest {
 
@@ -43,7 +26,10 @@ class PromoRequest implements AffirmRequest {
     @NonNull
     private SpannablePromoCallback callback;
 
-    private Call promoCall;
+    private PromoFetcher.Subscription subscription;
+    // Bumped by create and cancel, both called on the main thread, so a result posted by an
+    // older fetch is dropped
+    private int generation;
 
     PromoRequest(
             @Nullable final String promoId,
@@ -65,7 +51,66 @@ class PromoRequest implements AffirmRequest {
 
     @Override
     public void create() {
-        int centAmount = AffirmUtils.decimalDollarsToIntegerCents(dollarAmount);
+        final int actualCents = AffirmUtils.decimalDollarsToIntegerCents(dollarAmount);
+        final int requestCents = requestCents(actualCents);
+        final String url = promoUrl(promoId, pageType, requestCents, showCta, affirmColor,
+                affirmLogoType);
+        final PromoCache promoCache = AffirmPlugins.get().promoCache();
+        final PromoCache.Entry cached = promoCache.get(url);
+
+        // The previous fetch must not overwrite what this one delivers
+        cancel();
+        final int requestGeneration = ++generation;
+
+        if (cached != null) {
+            deliverCachedResponse(cached.response, requestCents, actualCents);
+            if (promoCache.isFresh(cached)) {
+                return;
+            }
+        }
+
+        // When a stale promo is already on screen, refresh it quietly
+        final PromoResponse staleResponse = cached != null ? cached.response : null;
+
+        subscription = AffirmPlugins.get().promoFetcher().fetch(url, new PromoFetcher.Listener() {
+            @Override
+            public void onSuccess(@NonNull PromoResponse promoResponse) {
+                if (!promoResponse.equals(staleResponse)) {
+                    handleSuccessResponse(promoResponse, requestCents, actualCents,
+                            requestGeneration);
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception exception) {
+                handleErrorResponse(exception, staleResponse, requestGeneration);
+            }
+        });
+    }
+
+    @Override
+    public void cancel() {
+        generation++;
+        if (subscription != null) {
+            subscription.cancel();
+            subscription = null;
+        }
+    }
+
+    /**
+     * @return the amount the promo is requested for, bucketed if the configuration asks for it
+     */
+    static int requestCents(int actualCents) {
+        return PromoAmountBucketing.bucketCents(actualCents,
+                AffirmPlugins.get().promoAmountBucketCents());
+    }
+
+    static String promoUrl(@Nullable String promoId,
+                           @Nullable PromoPageType pageType,
+                           int centAmount,
+                           boolean showCta,
+                           @NonNull AffirmColor affirmColor,
+                           @NonNull AffirmLogoType affirmLogoType) {
         StringBuilder path = new StringBuilder(
                 String.format(
                         Locale.getDefault(),
@@ -89,96 +134,54 @@ class PromoRequest implements AffirmRequest {
                 .append("&logo_type=")
                 .append(affirmLogoType.getType());
 
-        if (promoCall != null) {
-            promoCall.cancel();
-        }
+        return AffirmHttpClient.getProtocol() + AffirmPlugins.get().baseUrl() + path.toString();
+    }
 
-        promoCall = AffirmPlugins.get().restClient().getCallForRequest(
-                new AffirmHttpRequest.Builder()
-                        .setUrl(
-                                AffirmHttpClient.getProtocol()
-                                        + AffirmPlugins.get().baseUrl()
-                                        + path.toString()
-                        )
-                        .setMethod(AffirmHttpRequest.Method.GET)
-                        .setTag(TAG_GET_NEW_PROMO)
-                        .build()
+    private void deliverCachedResponse(PromoResponse promoResponse, int requestCents,
+                                       int actualCents) {
+        // Cache hits are written synchronously so the label shows up on the first frame
+        AffirmPlugins.get().dispatcher().runOnMain(
+                () -> writePromo(promoResponse, requestCents, actualCents)
         );
-        promoCall.enqueue(new Callback() {
-            @Override
-            public void onResponse(
-                    @NotNull Call call,
-                    @NotNull Response response
-            ) throws IOException {
-                ResponseBody responseBody = response.body();
-                Gson gson = AffirmPlugins.get().gson();
-
-                if (response.isSuccessful()) {
-                    if (responseBody != null) {
-                        handleSuccessResponse(
-                                gson.fromJson(responseBody.string(), PromoResponse.class)
-                        );
-                    } else {
-                        handleErrorResponse(
-                                new APIException("Response was success, but body was null", null)
-                        );
-                    }
-                } else {
-                    AffirmException affirmException =
-                            AffirmHttpClient.createExceptionAndTrackFromResponse(
-                                    call.request(),
-                                    response,
-                                    responseBody
-                            );
-
-                    if (affirmException == null) {
-                        affirmException = new APIException("Response was not successful", null);
-                    }
-
-                    handleErrorResponse(affirmException);
-                }
-            }
+    }
 
-            @Override
-            public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                AffirmTracker.track(
-                        NETWORK_ERROR,
-                        ERROR,
-                        createTrackingNetworkJsonObj(
-                                call.request(),
-                                null
-                        )
-                );
-                handleErrorResponse(e);
+    private void handleSuccessResponse(PromoResponse promoResponse, int requestCents,
+                                       int actualCents, int requestGeneration) {
+        AffirmPlugins.get().dispatcher().postToMain(() -> {
+            if (requestGeneration == generation) {
+                writePromo(promoResponse, requestCents, actualCents);
             }
         });
     }
 
-    @Override
-    public void cancel() {
-        if (promoCall != null) {
-            promoCall.cancel();
-            promoCall = null;
-        }
-    }
-
-    private void handleSuccessResponse(PromoResponse promoResponse) {
-        final boolean showPrequal = !promoResponse.promo()
+    static boolean showPrequal(@NonNull PromoResponse promoResponse) {
+        return !promoResponse.promo()
                 .promoConfig()
                 .promoStyle()
                 .equals("fast");
+    }
 
-        final String promo = promoResponse.promo().ala();
-        final String htmlPromo = promoResponse.promo().htmlAla();
-        new Handler(Looper.getMainLooper()).post(
-                () -> callback.onPromoWritten(promo, htmlPromo, showPrequal)
-        );
+    private void writePromo(PromoResponse promoResponse, int requestCents, int actualCents) {
+        final boolean showPrequal = showPrequal(promoResponse);
+        final String promo = PromoAmountBucketing.rescale(
+                promoResponse.promo().ala(), requestCents, actualCents);
+        final String htmlPromo = PromoAmountBucketing.rescale(
+                promoResponse.promo().htmlAla(), requestCents, actualCents);
+        callback.onPromoWritten(promo, htmlPromo, showPrequal);
     }
 
-    private void handleErrorResponse(Exception e) {
+    private void handleErrorResponse(Exception e, @Nullable PromoResponse staleResponse,
+                                     int requestGeneration) {
+        if (staleResponse != null) {
+            // The stale promo stays on screen, a failed refresh is not worth reporting
+            AffirmLog.w("Failed to refresh cached promo: " + e.toString());
+            return;
+        }
         AffirmLog.e(e.toString());
-        new Handler(Looper.getMainLooper()).post(
-                () -> callback.onFailure(new APIException(e.getMessage(), e))
-        );
+        AffirmPlugins.get().dispatcher().postToMain(() -> {
+            if (requestGeneration == generation) {
+                callback.onFailure(new APIException(e.getMessage(), e));
+            }
+        });
     }
 }
@@ -9,6 +9,7 @@ import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.text.Spannable;
 import android.text.SpannableString;
+import android.text.Spanned;
 import android.text.style.ImageSpan;
 import android.util.AttributeSet;
 import android.util.TypedValue;
@@ -64,6 +65,22 @@ class PromotionButton extends AppCompatButton {
         return spannableFromEditText(template, textSize, typeface);
     }
 
+    /**
+     * Render the html promo message natively, with the logo drawn like {@link #updateSpan}.
+     */
+    Spanned updateHtmlSpan(@NonNull String html, @Nullable String css) {
+        final float textSize = getTextSize();
+        final Resources resources = getResources();
+        final int color = resources.getColor(affirmColor.getColorRes());
+
+        PromoHtmlRenderer.LogoSpanFactory logoSpanFactory = null;
+        if (affirmLogoType != AFFIRM_DISPLAY_TYPE_TEXT) {
+            logoSpanFactory = () -> getLogoSpan(textSize,
+                    resources.getDrawable(affirmLogoType.getDrawableRes()), color);
+        }
+        return PromoHtmlRenderer.render(html, css, logoSpanFactory);
+    }
+
     private SpannableString spannableFromEditText(@NonNull String template, float textSize,
                                                   @NonNull Typeface typeface) {
         Resources resources = getResources();
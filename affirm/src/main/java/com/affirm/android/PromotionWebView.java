@@ -10,8 +10,6 @@ import androidx.annotation.NonNull;
 
 import com.affirm.android.exception.ConnectionException;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 import static com.affirm.android.AffirmConstants.API_KEY;
@@ -104,14 +102,6 @@ class PromotionWebView extends AffirmWebView implements AffirmWebChromeClient.Ca
     }
 
     private String initialHtml(String promoHtml, String remoteCssUrl) {
-        String html;
-        try {
-            final InputStream ins = getResources().openRawResource(R.raw.affirm_promo);
-            html = AffirmUtils.readInputStream(ins);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
         final HashMap<String, String> map = new HashMap<>();
         final String fullPath = HTTPS_PROTOCOL + AffirmPlugins.get().baseJsUrl() + JS_PATH;
 
@@ -119,7 +109,7 @@ class PromotionWebView extends AffirmWebView implements AffirmWebChromeClient.Ca
         map.put(JAVASCRIPT, fullPath);
         map.put(HTML_FRAGMENT, promoHtml);
         map.put(REMOTE_CSS_URL, remoteCssUrl != null ? remoteCssUrl : "");
-        return AffirmUtils.replacePlaceholders(html, map);
+        return HtmlTemplate.get(getResources(), R.raw.affirm_promo).render(map);
     }
 
     @Override
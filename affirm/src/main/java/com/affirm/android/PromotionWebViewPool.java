@@ -0,0 +1,98 @@
+package com.affirm.android;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Looper;
+import android.view.ViewGroup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A small pool of {@link PromotionWebView}s, so that html styled promotion buttons recycle
+ * WebViews instead of constructing a new one each time they are inflated. The WebViews are
+ * created with a {@link MutableContextWrapper} and are switched to the application context while
+ * idle, so the pool never holds on to an activity.
+ * <p>
+ * Must only be used from the main thread.
+ */
+final class PromotionWebViewPool {
+
+    static final int MAX_IDLE = 3;
+
+    private static final String BLANK_PAGE = "about:blank";
+
+    private static final Deque<PromotionWebView> idleWebViews = new ArrayDeque<>();
+
+    private PromotionWebViewPool() {
+    }
+
+    @NonNull
+    static PromotionWebView acquire(@NonNull Context context) {
+        final PromotionWebView webView = idleWebViews.pollFirst();
+        if (webView == null) {
+            return create(context);
+        }
+        ((MutableContextWrapper) webView.getContext()).setBaseContext(context);
+        return webView;
+    }
+
+    static void release(@NonNull PromotionWebView webView) {
+        if (idleWebViews.contains(webView)) {
+            // Already back in the pool, it must not be handed out twice
+            return;
+        }
+        final ViewGroup parent = (ViewGroup) webView.getParent();
+        if (parent != null) {
+            parent.removeView(webView);
+        }
+        webView.setWebViewClickListener(null);
+
+        if (idleWebViews.size() >= MAX_IDLE) {
+            webView.destroy();
+            return;
+        }
+
+        webView.loadUrl(BLANK_PAGE);
+        final Context context = webView.getContext();
+        ((MutableContextWrapper) context).setBaseContext(context.getApplicationContext());
+        idleWebViews.addLast(webView);
+    }
+
+    /**
+     * Create idle WebViews while the main thread has nothing else to do, so that the first
+     * html styled promotion buttons don't pay for the WebView construction.
+     */
+    static void prewarm(@NonNull Context context, int count) {
+        final Context appContext = context.getApplicationContext();
+        final int target = Math.min(count, MAX_IDLE);
+        Looper.myQueue().addIdleHandler(() -> {
+            if (idleWebViews.size() < target) {
+                idleWebViews.addLast(create(appContext));
+            }
+            // Keep the handler until the pool is warm, one WebView per idle pass
+            return idleWebViews.size() < target;
+        });
+    }
+
+    static int idleCount() {
+        return idleWebViews.size();
+    }
+
+    static void reset() {
+        for (PromotionWebView webView : idleWebViews) {
+            webView.destroy();
+        }
+        idleWebViews.clear();
+    }
+
+    @NonNull
+    private static PromotionWebView create(@NonNull Context context) {
+        final PromotionWebView webView = new PromotionWebView(new MutableContextWrapper(context));
+        webView.setBackgroundColor(
+                webView.getResources().getColor(android.R.color.transparent));
+        return webView;
+    }
+}
@@ -1,15 +1,20 @@
 package com.affirm.android;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.affirm.android.exception.AffirmException;
 import com.affirm.android.exception.ConnectionException;
 import com.affirm.android.model.AffirmError;
-import com.google.gson.JsonObject;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.Writer;
 
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -25,13 +30,31 @@ import static com.affirm.android.AffirmConstants.X_AFFIRM_REQUEST_ID;
 
 class TrackerRequest implements AffirmRequest {
 
+    // Writing a json tree doesn't depend on the configuration, shared with the spill file
+    private static final TypeAdapter<JsonElement> EVENTS_ADAPTER =
+            new Gson().getAdapter(JsonElement.class);
+
+    interface Listener {
+        /**
+         * @param retry true if the events were not delivered and should be sent again later
+         */
+        void onComplete(boolean retry);
+    }
+
     @NonNull
-    private JsonObject trackingData;
+    private JsonElement trackingData;
+    @Nullable
+    private final Listener listener;
 
     private Call trackingCall;
 
-    TrackerRequest(@NonNull JsonObject trackingData) {
+    TrackerRequest(@NonNull JsonElement trackingData) {
+        this(trackingData, null);
+    }
+
+    TrackerRequest(@NonNull JsonElement trackingData, @Nullable Listener listener) {
         this.trackingData = trackingData;
+        this.listener = listener;
     }
 
     @Override
@@ -39,21 +62,27 @@ class TrackerRequest implements AffirmRequest {
         AffirmPlugins plugins = AffirmPlugins.get();
 
         if (trackingCall != null) {
-            trackingCall.cancel();
+            AffirmTimeoutPolicy.cancel(trackingCall);
         }
 
         trackingCall = plugins.restClient().getCallForRequest(
                 new AffirmHttpRequest.Builder()
                         .setUrl(getTrackerProtocol() + plugins.trackerBaseUrl() + TRACKER_PATH)
                         .setMethod(AffirmHttpRequest.Method.POST)
-                        .setBody(new AffirmHttpBody(CONTENT_TYPE, trackingData.toString()))
+                        .setBody(new AffirmHttpBody(CONTENT_TYPE,
+                                (Writer writer) -> writeTrackingData(writer, trackingData)))
                         .setTag(TAG_TRACKER)
+                        // Sending a batch twice at worst repeats its events, it is safe to retry
+                        .setIdempotent(true)
                         .build()
         );
         trackingCall.enqueue(new Callback() {
             @Override
             public void onResponse(@NotNull Call call, @NotNull Response response) {
                 if (!response.isSuccessful()) {
+                    // Client errors will never succeed, only server errors are worth retrying
+                    notifyComplete(response.code() >= 500);
+
                     ResponseBody responseBody = response.body();
                     if (responseBody != null && responseBody.contentLength() > 0) {
                         final AffirmError affirmError = AffirmPlugins.get()
@@ -68,12 +97,17 @@ class TrackerRequest implements AffirmRequest {
 
                         handleException(affirmException);
                     }
+                } else {
+                    notifyComplete(false);
                 }
+                response.close();
             }
 
             @Override
             public void onFailure(@NotNull Call call, @NotNull IOException e) {
                 handleException(new ConnectionException("i/o failure", e));
+                // A batch that ran out of its deadline is sent again, like any other failure
+                notifyComplete(!AffirmTimeoutPolicy.isCanceledByCaller(call));
             }
         });
     }
@@ -81,15 +115,33 @@ class TrackerRequest implements AffirmRequest {
     @Override
     public void cancel() {
         if (trackingCall != null) {
-            trackingCall.cancel();
+            AffirmTimeoutPolicy.cancel(trackingCall);
             trackingCall = null;
         }
     }
 
+    /**
+     * Write tracking events the way they are sent, the spill file uses it too.
+     */
+    static void writeTrackingData(@NonNull Writer writer,
+                                  @NonNull JsonElement trackingData) throws IOException {
+        final JsonWriter jsonWriter = new JsonWriter(writer);
+        // Events are built in place, absent values are left out of the payload
+        jsonWriter.setSerializeNulls(false);
+        EVENTS_ADAPTER.write(jsonWriter, trackingData);
+        jsonWriter.flush();
+    }
+
     private String getTrackerProtocol() {
         return AffirmPlugins.get().trackerBaseUrl().contains(HTTP) ? "" : HTTPS_PROTOCOL;
     }
 
+    private void notifyComplete(boolean retry) {
+        if (listener != null) {
+            listener.onComplete(retry);
+        }
+    }
+
     private void handleException(AffirmException e) {
         AffirmLog.w(e.toString());
     }
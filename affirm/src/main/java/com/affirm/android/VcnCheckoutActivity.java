@@ -11,8 +11,6 @@ import com.affirm.android.model.VcnReason;
 import com.affirm.android.model.Checkout;
 import com.affirm.android.model.CheckoutResponse;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.HashMap;
 
 import androidx.annotation.NonNull;
@@ -78,6 +76,7 @@ public class VcnCheckoutActivity extends CheckoutBaseActivity
                 AffirmTracker.track(VCN_CHECKOUT_CREATION_SUCCESS, INFO, null);
                 final String html = initialHtml(response);
                 final Uri uri = Uri.parse(response.redirectUrl());
+                onCheckoutLoading();
                 webView.loadDataWithBaseURL(HTTPS_PROTOCOL + uri.getHost(), html,
                         TEXT_HTML, UTF_8, null);
             }
@@ -85,21 +84,13 @@ public class VcnCheckoutActivity extends CheckoutBaseActivity
     }
 
     private String initialHtml(@NonNull CheckoutResponse response) {
-        String html;
-        try {
-            final InputStream ins = getResources().openRawResource(R.raw.affirm_vcn_checkout);
-            html = AffirmUtils.readInputStream(ins);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
         final HashMap<String, String> map = new HashMap<>();
 
         map.put(URL, response.redirectUrl());
         map.put(URL2, response.redirectUrl());
         map.put(CONFIRM_CB_URL, AFFIRM_CHECKOUT_CONFIRMATION_URL);
         map.put(CANCELLED_CB_URL, AFFIRM_CHECKOUT_CANCELLATION_URL);
-        return AffirmUtils.replacePlaceholders(html, map);
+        return HtmlTemplate.get(getResources(), R.raw.affirm_vcn_checkout).render(map);
     }
 
     @Override
@@ -0,0 +1,370 @@
+package com.affirm.android;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import okhttp3.Call;
+import okhttp3.CacheControl;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+import static com.affirm.android.AffirmConstants.TAG_WEB_ASSET;
+
+/**
+ * A disk cache of the assets of the Affirm CDN, e.g. {@code affirm.js}, used by the WebViews of
+ * the SDK. A cached asset is served right away and revalidated in the background with its ETag or
+ * Last-Modified date. It is served for at most a day after its download, or its max-age if
+ * shorter; past that it loads from the network and is downloaded again. Assets that are not
+ * cached yet load from the network as usual, and are downloaded into the cache in the
+ * background. The least recently used assets are evicted once
+ * the cache is over its size limit.
+ * <p>
+ * Each asset is a single file, its metadata on the first line followed by the body, replaced
+ * with one rename. A reader holding the file open keeps reading the version it opened.
+ * <p>
+ * The assets are fetched with a plain client, without the headers, cookies, retries and circuit
+ * breaker of the Affirm API requests.
+ */
+final class WebAssetCache {
+
+    static final long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+    // An asset is revalidated at most once per interval
+    static final long REVALIDATE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // An asset is not served for longer than this after its download
+    static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final String DIR_NAME = "affirm_web_assets";
+    private static final String TMP_SUFFIX = ".tmp";
+    // The metadata line is a few hundred bytes, anything longer is a corrupt file
+    private static final long MAX_META_BYTES = 8 * 1024;
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_ALLOW_ORIGIN = "Access-Control-Allow-Origin";
+
+    private final Object lock = new Object();
+    private final File dir;
+    private final String host;
+    private final long maxBytes;
+    private final OkHttpClient client;
+    private final Map<String, Long> validatedAt = new HashMap<>();
+
+    private static final class Meta {
+        String url;
+        String mimeType;
+        String encoding;
+        String etag;
+        String lastModified;
+        String allowOrigin;
+        long expiresAt;
+    }
+
+    WebAssetCache(@NonNull File cacheDir,
+                  @NonNull String host,
+                  long maxBytes,
+                  @NonNull OkHttpClient client) {
+        this.dir = new File(cacheDir, DIR_NAME);
+        this.host = host;
+        this.maxBytes = maxBytes;
+        this.client = client;
+    }
+
+    /**
+     * @return the cached asset, or null if the request should go to the network
+     */
+    @Nullable
+    WebResourceResponse intercept(@NonNull WebResourceRequest request) {
+        return intercept(request, System.currentTimeMillis());
+    }
+
+    /**
+     * @param now the current time, from {@link System#currentTimeMillis()}, the expiry of the
+     *            assets outlives the process
+     */
+    @Nullable
+    WebResourceResponse intercept(@NonNull WebResourceRequest request, long now) {
+        if (!isCacheable(request)) {
+            return null;
+        }
+
+        final String url = request.getUrl().toString();
+        final String key = key(url);
+        final File file = new File(dir, key);
+        final BufferedSource source;
+        try {
+            source = Okio.buffer(Okio.source(file));
+        } catch (FileNotFoundException e) {
+            refresh(url, key, null, now);
+            return null;
+        }
+
+        final Meta meta = readMeta(key, source);
+        if (meta == null || !url.equals(meta.url) || now >= meta.expiresAt) {
+            closeQuietly(source);
+            // Downloaded again even if unchanged, a revalidation doesn't extend the expiry
+            refresh(url, key, null, now);
+            return null;
+        }
+        // The modification time orders the assets for eviction
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            AffirmLog.v("Failed to touch web asset " + url);
+        }
+        refresh(url, key, meta, now);
+
+        final Map<String, String> headers = new HashMap<>();
+        if (meta.allowOrigin != null) {
+            headers.put(HEADER_ALLOW_ORIGIN, meta.allowOrigin);
+        }
+        return new WebResourceResponse(meta.mimeType, meta.encoding, 200, "OK", headers,
+                source.inputStream());
+    }
+
+    private boolean isCacheable(@NonNull WebResourceRequest request) {
+        final Uri uri = request.getUrl();
+        return "GET".equalsIgnoreCase(request.getMethod())
+                && "https".equalsIgnoreCase(uri.getScheme())
+                && host.equalsIgnoreCase(uri.getHost())
+                && !request.getRequestHeaders().containsKey("Range");
+    }
+
+    // Download or revalidate the asset in the background, at most once per interval
+    private void refresh(@NonNull final String url,
+                         @NonNull final String key,
+                         @Nullable Meta cached,
+                         long now) {
+        synchronized (lock) {
+            final Long lastValidation = validatedAt.get(url);
+            if (lastValidation != null && now - lastValidation < REVALIDATE_INTERVAL_MILLIS) {
+                return;
+            }
+            validatedAt.put(url, now);
+        }
+
+        final Request.Builder builder = new Request.Builder()
+                .url(url)
+                .tag(TAG_WEB_ASSET);
+        if (cached != null && cached.etag != null) {
+            builder.header(HEADER_IF_NONE_MATCH, cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            builder.header(HEADER_IF_MODIFIED_SINCE, cached.lastModified);
+        }
+
+        client.newCall(builder.build())
+                .enqueue(new Callback() {
+                    @Override
+                    public void onResponse(@NonNull Call call, @NonNull Response response) {
+                        try {
+                            if (response.code() == 200) {
+                                store(url, key, response, now);
+                            } else if (response.code() == 404 || response.code() == 410) {
+                                remove(key);
+                            }
+                        } finally {
+                            response.close();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                        synchronized (lock) {
+                            // Try again on the next request
+                            validatedAt.remove(url);
+                        }
+                        AffirmLog.v("Failed to refresh web asset " + url + ": " + e.toString());
+                    }
+                });
+    }
+
+    private void store(@NonNull String url,
+                       @NonNull String key,
+                       @NonNull Response response,
+                       long downloadedAt) {
+        final ResponseBody body = response.body();
+        final CacheControl cacheControl = response.cacheControl();
+        if (body == null || cacheControl.noStore() || cacheControl.maxAgeSeconds() == 0) {
+            return;
+        }
+        long maxAgeMillis = MAX_AGE_MILLIS;
+        if (cacheControl.maxAgeSeconds() > 0) {
+            maxAgeMillis = Math.min(maxAgeMillis,
+                    TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds()));
+        }
+        // No single asset takes over the cache
+        final long maxEntryBytes = maxBytes / 4;
+        if (body.contentLength() > maxEntryBytes) {
+            return;
+        }
+
+        final MediaType contentType = body.contentType();
+        final Charset charset = contentType != null ? contentType.charset() : null;
+        final JsonObject meta = new JsonObject();
+        meta.addProperty("url", url);
+        meta.addProperty("mime_type", contentType != null
+                ? contentType.type() + "/" + contentType.subtype() : "application/octet-stream");
+        meta.addProperty("encoding", charset != null ? charset.name() : null);
+        meta.addProperty("etag", response.header(HEADER_ETAG));
+        meta.addProperty("last_modified", response.header(HEADER_LAST_MODIFIED));
+        meta.addProperty("allow_origin", response.header(HEADER_ALLOW_ORIGIN));
+        meta.addProperty("expires_at", downloadedAt + maxAgeMillis);
+
+        synchronized (lock) {
+            if (!dir.exists() && !dir.mkdirs()) {
+                AffirmLog.w("Failed to create the web asset cache");
+                return;
+            }
+        }
+
+        final File file = new File(dir, key);
+        final File tmpFile = new File(dir, key + TMP_SUFFIX);
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmpFile))) {
+            sink.writeUtf8(meta.toString()).writeByte('\n');
+            if (sink.writeAll(body.source()) > maxEntryBytes) {
+                sink.close();
+                delete(tmpFile);
+                return;
+            }
+        } catch (IOException e) {
+            AffirmLog.w("Failed to store web asset " + url, e);
+            delete(tmpFile);
+            return;
+        }
+
+        synchronized (lock) {
+            if (!tmpFile.renameTo(file)) {
+                AffirmLog.w("Failed to store web asset " + url);
+                delete(tmpFile);
+                return;
+            }
+            evict();
+        }
+    }
+
+    // Reads the metadata line, the source is then positioned at the start of the body
+    @Nullable
+    private Meta readMeta(@NonNull String key, @NonNull BufferedSource source) {
+        try {
+            final JsonObject json =
+                    new JsonParser().parse(source.readUtf8LineStrict(MAX_META_BYTES))
+                            .getAsJsonObject();
+            final Meta meta = new Meta();
+            meta.url = optString(json, "url");
+            meta.mimeType = optString(json, "mime_type");
+            meta.encoding = optString(json, "encoding");
+            meta.etag = optString(json, "etag");
+            meta.lastModified = optString(json, "last_modified");
+            meta.allowOrigin = optString(json, "allow_origin");
+            // Assets stored without an expiry are expired
+            final JsonElement expiresAt = json.get("expires_at");
+            meta.expiresAt = expiresAt != null ? expiresAt.getAsLong() : 0;
+            return meta;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            AffirmLog.w("Dropping corrupt web asset", e);
+            remove(key);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(@NonNull BufferedSource source) {
+        try {
+            source.close();
+        } catch (IOException ignored) {
+            // Only read from
+        }
+    }
+
+    @Nullable
+    private static String optString(@NonNull JsonObject json, @NonNull String name) {
+        final JsonElement element = json.get(name);
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+
+    private void remove(@NonNull String key) {
+        synchronized (lock) {
+            delete(new File(dir, key));
+        }
+    }
+
+    // Must be called with the lock held
+    private void evict() {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        final List<File> assets = new ArrayList<>();
+        for (File file : files) {
+            totalBytes += file.length();
+            if (!file.getName().endsWith(TMP_SUFFIX)) {
+                assets.add(file);
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        Collections.sort(assets, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : assets) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            totalBytes -= file.length();
+            delete(file);
+        }
+    }
+
+    private static void delete(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            AffirmLog.w("Failed to delete " + file.getName());
+        }
+    }
+
+    @NonNull
+    private static String key(@NonNull String url) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(url.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+}
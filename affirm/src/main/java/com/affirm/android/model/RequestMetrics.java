@@ -0,0 +1,93 @@
+package com.affirm.android.model;
+
+import com.google.auto.value.AutoValue;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Where the time of one request of the SDK went. Durations are in milliseconds, and are -1 for
+ * the phases the request didn't go through, e.g. no DNS lookup or connection on a reused
+ * connection. The phases of a retried request are those of its last attempt, the total covers
+ * every attempt and the backoff between them.
+ */
+@AutoValue
+public abstract class RequestMetrics {
+    public static Builder builder() {
+        return new AutoValue_RequestMetrics.Builder();
+    }
+
+    public static TypeAdapter<RequestMetrics> typeAdapter(Gson gson) {
+        return new AutoValue_RequestMetrics.GsonTypeAdapter(gson);
+    }
+
+    // The kind of request, e.g. GET_NEW_PROMO or CHECKOUT
+    @Nullable
+    public abstract String tag();
+
+    public abstract String url();
+
+    public abstract String method();
+
+    // The status code of the response, -1 if there was no response
+    @SerializedName("status_code")
+    public abstract int statusCode();
+
+    // True if the call failed on an I/O error or was canceled
+    public abstract boolean failed();
+
+    @SerializedName("dns_ms")
+    public abstract long dnsMillis();
+
+    // Connecting, TLS handshake included
+    @SerializedName("connect_ms")
+    public abstract long connectMillis();
+
+    @SerializedName("tls_ms")
+    public abstract long tlsMillis();
+
+    // Writing the request headers and body
+    @SerializedName("request_ms")
+    public abstract long requestMillis();
+
+    // From the end of the request to the first byte of the response
+    @SerializedName("ttfb_ms")
+    public abstract long ttfbMillis();
+
+    @SerializedName("response_body_ms")
+    public abstract long responseBodyMillis();
+
+    @SerializedName("total_ms")
+    public abstract long totalMillis();
+
+    @AutoValue.Builder
+    public abstract static class Builder {
+        public abstract Builder setTag(String value);
+
+        public abstract Builder setUrl(String value);
+
+        public abstract Builder setMethod(String value);
+
+        public abstract Builder setStatusCode(int value);
+
+        public abstract Builder setFailed(boolean value);
+
+        public abstract Builder setDnsMillis(long value);
+
+        public abstract Builder setConnectMillis(long value);
+
+        public abstract Builder setTlsMillis(long value);
+
+        public abstract Builder setRequestMillis(long value);
+
+        public abstract Builder setTtfbMillis(long value);
+
+        public abstract Builder setResponseBodyMillis(long value);
+
+        public abstract Builder setTotalMillis(long value);
+
+        public abstract RequestMetrics build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.affirm.android;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+
+import static com.affirm.android.Affirm.CircuitState.CLOSED;
+import static com.affirm.android.Affirm.CircuitState.HALF_OPEN;
+import static com.affirm.android.Affirm.CircuitState.OPEN;
+import static com.affirm.android.AffirmConstants.TAG_CHECKOUT;
+import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmCircuitBreakerTest {
+
+    private static final String HOST = "sandbox.affirm.com";
+    private static final String TAG = TAG_GET_NEW_PROMO;
+    private static final long OPEN_DURATION = 1000;
+
+    private final List<Affirm.CircuitState> states = new ArrayList<>();
+    private final AffirmCircuitBreaker breaker =
+            new AffirmCircuitBreaker(3, OPEN_DURATION, (host, tag, state) -> states.add(state));
+
+    private void fail(int times, long now) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.allowRequest(HOST, TAG, now));
+            breaker.onFailure(HOST, TAG, now);
+        }
+    }
+
+    private static Call promoCall() {
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .build()
+        );
+        return plugins.restClient().getCallForRequest(new AffirmHttpRequest.Builder()
+                .setUrl("https://" + HOST + "/api/promos/v2/Y8CQXFF044903JC0")
+                .setMethod(AffirmHttpRequest.Method.GET)
+                .setTag(TAG)
+                .build());
+    }
+
+    // Runs a cancelled call through the breaker, as OkHttp does once the call is cancelled
+    private void interceptCanceled(Call call) throws IOException {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(call.request());
+        when(chain.call()).thenReturn(call);
+        when(chain.proceed(any(Request.class))).thenThrow(new IOException("Canceled"));
+
+        try {
+            breaker.intercept(chain);
+        } catch (IOException expected) {
+            return;
+        }
+        throw new AssertionError("A cancelled call can't succeed");
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        fail(2, 0);
+        breaker.onSuccess(HOST, TAG);
+        fail(2, 0);
+        assertEquals(CLOSED, breaker.state(HOST, TAG));
+
+        fail(1, 0);
+        assertEquals(OPEN, breaker.state(HOST, TAG));
+        assertFalse(breaker.allowRequest(HOST, TAG, OPEN_DURATION - 1));
+        // Other hosts and other kinds of requests are not affected
+        assertTrue(breaker.allowRequest("tracker.affirm.com", TAG, 0));
+        assertTrue(breaker.allowRequest(HOST, TAG_CHECKOUT, 0));
+        assertEquals(CLOSED, breaker.state(HOST, TAG_CHECKOUT));
+    }
+
+    @Test
+    public void halfOpenProbeClosesTheCircuit() {
+        fail(3, 0);
+
+        assertTrue(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+        assertEquals(HALF_OPEN, breaker.state(HOST, TAG));
+        // Only one probe at a time
+        assertFalse(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+
+        breaker.onSuccess(HOST, TAG);
+        assertEquals(CLOSED, breaker.state(HOST, TAG));
+        assertTrue(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+        assertEquals(3, states.size());
+        assertEquals(OPEN, states.get(0));
+        assertEquals(HALF_OPEN, states.get(1));
+        assertEquals(CLOSED, states.get(2));
+    }
+
+    @Test
+    public void failedProbeOpensTheCircuitAgain() {
+        fail(3, 0);
+
+        assertTrue(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+        breaker.onFailure(HOST, TAG, OPEN_DURATION);
+        assertEquals(OPEN, breaker.state(HOST, TAG));
+        assertFalse(breaker.allowRequest(HOST, TAG, 2 * OPEN_DURATION - 1));
+        assertTrue(breaker.allowRequest(HOST, TAG, 2 * OPEN_DURATION));
+    }
+
+    @Test
+    public void canceledProbeLetsAnotherRequestProbe() {
+        fail(3, 0);
+
+        assertTrue(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+        breaker.onCanceled(HOST, TAG);
+        assertTrue(breaker.allowRequest(HOST, TAG, OPEN_DURATION));
+        assertEquals(HALF_OPEN, breaker.state(HOST, TAG));
+    }
+
+    @Test
+    public void expiredDeadlinesAreFailures() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Call call = promoCall();
+            // What OkHttp does once the deadline of the call expires
+            call.cancel();
+            interceptCanceled(call);
+        }
+
+        assertEquals(OPEN, breaker.state(HOST, TAG));
+    }
+
+    @Test
+    public void callerCancellationsAreNotFailures() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Call call = promoCall();
+            AffirmTimeoutPolicy.cancel(call);
+            interceptCanceled(call);
+        }
+
+        assertEquals(CLOSED, breaker.state(HOST, TAG));
+    }
+}
@@ -0,0 +1,78 @@
+package com.affirm.android;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmDispatcherTest {
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void postToMainRunsOnTheMainLooper() {
+        AffirmDispatcher dispatcher = new AffirmDispatcher(null);
+        boolean[] ran = new boolean[1];
+
+        ShadowLooper.pauseMainLooper();
+        dispatcher.postToMain(() -> ran[0] = true);
+        assertFalse(ran[0]);
+
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void runOnMainRunsRightAwayOnTheMainThread() {
+        AffirmDispatcher dispatcher = new AffirmDispatcher(null);
+        boolean[] ran = new boolean[1];
+
+        ShadowLooper.pauseMainLooper();
+        dispatcher.runOnMain(() -> ran[0] = true);
+
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void callbacksDefaultToTheMainLooper() {
+        AffirmDispatcher dispatcher = new AffirmDispatcher(null);
+        boolean[] ran = new boolean[1];
+
+        ShadowLooper.pauseMainLooper();
+        dispatcher.dispatchCallback(() -> ran[0] = true);
+        assertFalse(ran[0]);
+
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    public void callbacksUseTheConfiguredExecutor() {
+        List<Runnable> executed = new ArrayList<>();
+        Executor executor = command -> {
+            executed.add(command);
+            command.run();
+        };
+        AffirmDispatcher dispatcher = new AffirmDispatcher(executor);
+        boolean[] ran = new boolean[1];
+
+        ShadowLooper.pauseMainLooper();
+        dispatcher.dispatchCallback(() -> ran[0] = true);
+
+        assertTrue(ran[0]);
+        assertEquals(1, executed.size());
+    }
+}
@@ -0,0 +1,71 @@
+package com.affirm.android;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class AffirmHttpBodyTest {
+
+    private static final String JSON = "{\"events\":[{\"name\":\"Café\"}]}";
+
+    @Test
+    public void producedTextIsWrittenAsUtf8() throws IOException {
+        AffirmHttpBody body = new AffirmHttpBody("application/json; charset=utf-8",
+                (Writer writer) -> writer.write(JSON));
+
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+
+        assertEquals(JSON, sink.readUtf8());
+    }
+
+    @Test
+    public void producedBodyHasAContentLength() throws IOException {
+        AffirmHttpBody body = new AffirmHttpBody("application/json; charset=utf-8",
+                (Writer writer) -> writer.write(JSON));
+
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+
+        // Not sent chunked, the é is two bytes
+        assertEquals(JSON.length() + 1, body.contentLength());
+        assertEquals(sink.size(), body.contentLength());
+    }
+
+    @Test
+    public void producedBodyCanBeWrittenAgain() throws IOException {
+        AtomicInteger productions = new AtomicInteger();
+        AffirmHttpBody body = new AffirmHttpBody("application/json; charset=utf-8",
+                (Writer writer) -> {
+                    productions.incrementAndGet();
+                    writer.write(JSON);
+                });
+
+        Buffer first = new Buffer();
+        body.writeTo(first);
+        // Like OkHttp retrying the request
+        Buffer second = new Buffer();
+        body.writeTo(second);
+
+        assertEquals(JSON, first.readUtf8());
+        assertEquals(JSON, second.readUtf8());
+        assertEquals(1, productions.get());
+    }
+
+    @Test
+    public void stringBodyIsWrittenAsIs() throws IOException {
+        AffirmHttpBody body = new AffirmHttpBody("application/json; charset=utf-8", JSON);
+
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+
+        assertEquals(JSON, sink.readUtf8());
+        assertEquals(sink.size(), body.contentLength());
+    }
+}
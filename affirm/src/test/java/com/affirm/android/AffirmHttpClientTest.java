@@ -0,0 +1,197 @@
+package com.affirm.android;
+
+import com.affirm.android.model.CheckoutResponse;
+import com.affirm.android.model.PromoResponse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmHttpClientTest {
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final String PROMO = "\"promo\":{\"ala\":\"Starting at $50/month\","
+            + "\"html_ala\":\"Starting at $50/month\","
+            + "\"config\":{\"promo_prequal_enabled\":false,\"promo_style\":\"fast\"}}";
+
+    @After
+    public void tearDown() {
+        AffirmPlugins.reset();
+    }
+
+    private static void initialize() {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .build()
+        );
+    }
+
+    // A checkout response of exactly size bytes, padded in its redirect url
+    private static String checkoutJson(long size) {
+        final String suffix = "\"}";
+        final StringBuilder json =
+                new StringBuilder("{\"redirect_url\":\"https://sandbox.affirm.com/checkout/");
+        while (json.length() < size - suffix.length()) {
+            json.append('a');
+        }
+        return json.append(suffix).toString();
+    }
+
+    // A promo response of exactly size bytes, padded in a member the model doesn't have
+    private static String promoJson(long size) {
+        final String suffix = "\"," + PROMO + "}";
+        final StringBuilder json = new StringBuilder("{\"padding\":\"");
+        while (json.length() < size - suffix.length()) {
+            json.append('a');
+        }
+        return json.append(suffix).toString();
+    }
+
+    // A body that doesn't announce its length, like a chunked one
+    private static ResponseBody chunkedBody(String content) {
+        return ResponseBody.create(JSON, -1, new Buffer().writeUtf8(content));
+    }
+
+    @Test
+    public void appClientPoolsAndThreadsAreShared() {
+        OkHttpClient appClient = new OkHttpClient.Builder()
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .setOkHttpClient(appClient)
+                        .setTimeouts(2, 10, TimeUnit.SECONDS)
+                        .build()
+        );
+
+        OkHttpClient sdkClient = plugins.restClient().okHttpClient();
+
+        assertNotSame(appClient, sdkClient);
+        assertSame(appClient.connectionPool(), sdkClient.connectionPool());
+        assertSame(appClient.dispatcher(), sdkClient.dispatcher());
+        assertEquals(2000, sdkClient.connectTimeoutMillis());
+        assertEquals(10000, sdkClient.readTimeoutMillis());
+        assertFalse(sdkClient.followRedirects());
+        // The client of the app is left as is
+        assertEquals(60000, appClient.readTimeoutMillis());
+        assertEquals(0, appClient.interceptors().size());
+    }
+
+    @Test
+    public void defaultTimeoutsAreKept() {
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .build()
+        );
+
+        OkHttpClient sdkClient = plugins.restClient().okHttpClient();
+
+        assertEquals(AffirmPlugins.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                sdkClient.connectTimeoutMillis());
+        assertEquals(AffirmPlugins.DEFAULT_READ_TIMEOUT_MILLIS,
+                sdkClient.readTimeoutMillis());
+    }
+
+    @Test
+    public void plainClientHasNoSdkInterceptors() {
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .build()
+        );
+
+        OkHttpClient plainClient = plugins.createPlainClient();
+
+        assertTrue(plainClient.interceptors().isEmpty());
+        assertTrue(plainClient.followRedirects());
+        assertSame(plugins.restClient().okHttpClient().connectionPool(),
+                plainClient.connectionPool());
+    }
+
+    @Test
+    public void plainClientIsTheAppClient() {
+        OkHttpClient appClient = new OkHttpClient();
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .setOkHttpClient(appClient)
+                        .build()
+        );
+
+        assertSame(appClient, plugins.createPlainClient());
+    }
+
+    @Test
+    public void checkoutResponseAtTheLimitIsDecoded() throws IOException {
+        initialize();
+        String json = checkoutJson(CheckoutRequest.MAX_RESPONSE_BYTES);
+        assertEquals(CheckoutRequest.MAX_RESPONSE_BYTES, json.length());
+
+        CheckoutResponse response = AffirmHttpClient.parseResponseBody(
+                ResponseBody.create(JSON, json), CheckoutResponse.class,
+                CheckoutRequest.MAX_RESPONSE_BYTES);
+        assertNotNull(response);
+
+        response = AffirmHttpClient.parseResponseBody(chunkedBody(json), CheckoutResponse.class,
+                CheckoutRequest.MAX_RESPONSE_BYTES);
+        assertNotNull(response);
+    }
+
+    @Test
+    public void promoResponseAtTheLimitIsDecoded() throws IOException {
+        initialize();
+        String json = promoJson(PromoFetcher.MAX_RESPONSE_BYTES);
+        assertEquals(PromoFetcher.MAX_RESPONSE_BYTES, json.length());
+
+        PromoResponse response = AffirmHttpClient.parseResponseBody(chunkedBody(json),
+                PromoResponse.class, PromoFetcher.MAX_RESPONSE_BYTES);
+        assertNotNull(response);
+        assertEquals("Starting at $50/month", response.promo().ala());
+    }
+
+    @Test
+    public void responseOverTheAnnouncedLimitFails() {
+        initialize();
+        ResponseBody body = ResponseBody.create(JSON,
+                checkoutJson(CheckoutRequest.MAX_RESPONSE_BYTES + 1));
+
+        try {
+            AffirmHttpClient.parseResponseBody(body, CheckoutResponse.class,
+                    CheckoutRequest.MAX_RESPONSE_BYTES);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+
+    @Test
+    public void responseGrowingOverTheLimitFails() {
+        initialize();
+        ResponseBody body = chunkedBody(promoJson(PromoFetcher.MAX_RESPONSE_BYTES + 1));
+
+        try {
+            AffirmHttpClient.parseResponseBody(body, PromoResponse.class,
+                    PromoFetcher.MAX_RESPONSE_BYTES);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.affirm.android;
+
+import com.affirm.android.model.RequestMetrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmNetworkTimingsTest {
+
+    private static final String URL = "https://sandbox.affirm.com/api/promos/v2/Y8CQXFF044903JC0";
+
+    private final List<RequestMetrics> reported = new ArrayList<>();
+    // The events received by the event listener of the app
+    private final List<String> appEvents = new ArrayList<>();
+    private final EventListener appListener = new EventListener() {
+        @Override
+        public void callStart(Call call) {
+            appEvents.add("callStart");
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            appEvents.add("responseHeadersEnd " + response.code());
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            appEvents.add("callFailed " + ioe.getMessage());
+        }
+    };
+    private AffirmNetworkTimings.Factory factory;
+    private AffirmNetworkTimings timings;
+    private Request request;
+    private Call call;
+
+    @Before
+    public void setup() {
+        request = new Request.Builder()
+                .url(URL)
+                .tag(AffirmNetworkTimings.Slot.class,
+                        new AffirmNetworkTimings.Slot(TAG_GET_NEW_PROMO))
+                .build();
+        call = mock(Call.class);
+        when(call.request()).thenReturn(request);
+        factory = new AffirmNetworkTimings.Factory(c -> appListener, reported::add);
+        timings = (AffirmNetworkTimings) factory.create(call);
+    }
+
+    @Test
+    public void eachCallGetsItsOwnTimings() {
+        assertSame(timings, AffirmNetworkTimings.of(request));
+
+        // Retried by the app with the same request
+        EventListener second = factory.create(call);
+        assertNotSame(timings, second);
+        assertSame(second, AffirmNetworkTimings.of(request));
+
+        Call untagged = mock(Call.class);
+        when(untagged.request()).thenReturn(new Request.Builder().url(URL).build());
+        assertSame(appListener, factory.create(untagged));
+        assertNull(AffirmNetworkTimings.of(untagged.request()));
+    }
+
+    @Test
+    public void eventsAreForwardedToTheAppListener() {
+        timings.callStart(call);
+        timings.responseHeadersEnd(call, new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .message("")
+                .build());
+        timings.callFailed(call, new IOException("reset"));
+
+        assertEquals(Arrays.asList("callStart", "responseHeadersEnd 503", "callFailed reset"),
+                appEvents);
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void phasesAreReportedOnceTheCallEnds() {
+
+        timings.callStart(call);
+        timings.requestHeadersStart(call);
+        timings.requestHeadersEnd(call, request);
+        timings.responseHeadersStart(call);
+        timings.responseHeadersEnd(call, new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("")
+                .build());
+        timings.responseBodyStart(call);
+        timings.responseBodyEnd(call, 100);
+        assertTrue(reported.isEmpty());
+        timings.callEnd(call);
+
+        assertEquals(1, reported.size());
+        RequestMetrics metrics = reported.get(0);
+        assertEquals(TAG_GET_NEW_PROMO, metrics.tag());
+        assertEquals(URL, metrics.url());
+        assertEquals("GET", metrics.method());
+        assertEquals(200, metrics.statusCode());
+        assertFalse(metrics.failed());
+        // The connection was reused
+        assertEquals(-1, metrics.dnsMillis());
+        assertEquals(-1, metrics.connectMillis());
+        assertEquals(-1, metrics.tlsMillis());
+        assertTrue(metrics.requestMillis() >= 0);
+        assertTrue(metrics.ttfbMillis() >= 0);
+        assertTrue(metrics.responseBodyMillis() >= 0);
+        assertTrue(metrics.totalMillis() >= 0);
+    }
+
+    private Response response(int code) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .build();
+    }
+
+    // One attempt of the call, on a new connection or a pooled one
+    private void attempt(boolean connect, int code) {
+        Connection connection = mock(Connection.class);
+        if (connect) {
+            InetSocketAddress address =
+                    InetSocketAddress.createUnresolved("sandbox.affirm.com", 443);
+            timings.dnsStart(call, "sandbox.affirm.com");
+            timings.dnsEnd(call, "sandbox.affirm.com", new ArrayList<>());
+            timings.connectStart(call, address, Proxy.NO_PROXY);
+            timings.connectEnd(call, address, Proxy.NO_PROXY, Protocol.HTTP_1_1);
+        }
+        timings.connectionAcquired(call, connection);
+        timings.requestHeadersStart(call);
+        timings.requestHeadersEnd(call, request);
+        if (code < 0) {
+            timings.requestFailed(call, new IOException("reset"));
+        } else {
+            timings.responseHeadersStart(call);
+            timings.responseHeadersEnd(call, response(code));
+            timings.responseBodyStart(call);
+            timings.responseBodyEnd(call, 100);
+        }
+        timings.connectionReleased(call, connection);
+    }
+
+    @Test
+    public void retriesReportTheLastAttempt() {
+        timings.callStart(call);
+        attempt(true, 503);
+        attempt(false, 200);
+        timings.callEnd(call);
+
+        RequestMetrics metrics = reported.get(0);
+        assertEquals(200, metrics.statusCode());
+        // The second attempt reused the connection of the first one
+        assertEquals(-1, metrics.dnsMillis());
+        assertEquals(-1, metrics.connectMillis());
+        assertTrue(metrics.ttfbMillis() >= 0);
+        assertTrue(metrics.totalMillis() >= 0);
+    }
+
+    @Test
+    public void aLastAttemptWithoutResponseHasNoStatusCode() {
+        timings.callStart(call);
+        attempt(false, 503);
+        attempt(true, -1);
+        timings.callFailed(call, new IOException("reset"));
+
+        RequestMetrics metrics = reported.get(0);
+        assertTrue(metrics.failed());
+        assertEquals(-1, metrics.statusCode());
+        assertEquals(-1, metrics.ttfbMillis());
+        assertTrue(metrics.dnsMillis() >= 0);
+        assertTrue(metrics.connectMillis() >= 0);
+    }
+
+    @Test
+    public void failuresAreReported() {
+        timings.callStart(call);
+        timings.callFailed(call, new IOException("reset"));
+
+        assertEquals(1, reported.size());
+        assertTrue(reported.get(0).failed());
+        assertEquals(-1, reported.get(0).statusCode());
+    }
+}
@@ -0,0 +1,63 @@
+package com.affirm.android;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmPluginsTest {
+
+    private static final int THREADS = 8;
+
+    private AffirmPlugins plugins;
+
+    @Before
+    public void setup() {
+        plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .build()
+        );
+    }
+
+    @Test
+    public void concurrentCallersGetTheSameInstances() throws InterruptedException {
+        final Set<Object> restClients = ConcurrentHashMap.newKeySet();
+        final Set<Object> trackerQueues = ConcurrentHashMap.newKeySet();
+        final Set<Object> promoCaches = ConcurrentHashMap.newKeySet();
+
+        // Released at once, so the first calls race to create the instances
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                restClients.add(plugins.restClient());
+                trackerQueues.add(plugins.trackerQueue());
+                promoCaches.add(plugins.promoCache());
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, restClients.size());
+        assertEquals(1, trackerQueues.size());
+        assertEquals(1, promoCaches.size());
+    }
+}
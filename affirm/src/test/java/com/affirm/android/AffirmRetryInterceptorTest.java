@@ -0,0 +1,233 @@
+package com.affirm.android;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmRetryInterceptorTest {
+
+    private static final String URL = "https://sandbox.affirm.com/api/promos/v2/Y8CQXFF044903JC0";
+
+    private Interceptor.Chain chain;
+    private Call call;
+    private final AtomicBoolean canceled = new AtomicBoolean();
+    // The deadline of the call, none by default
+    private final Timeout timeout = new Timeout();
+
+    @Before
+    public void setup() {
+        chain = mock(Interceptor.Chain.class);
+        call = mock(Call.class);
+        when(chain.call()).thenReturn(call);
+        when(call.isCanceled()).thenAnswer(invocation -> canceled.get());
+        when(call.timeout()).thenReturn(timeout);
+    }
+
+    private static Response response(Request request, int code, String retryAfter) {
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("");
+        if (retryAfter != null) {
+            builder.header("Retry-After", retryAfter);
+        }
+        return builder.build();
+    }
+
+    private static Request post(boolean idempotent) {
+        AffirmHttpRequest affirmRequest = new AffirmHttpRequest.Builder()
+                .setUrl(URL)
+                .setMethod(AffirmHttpRequest.Method.POST)
+                .setIdempotent(idempotent)
+                .build();
+        return new Request.Builder()
+                .url(URL)
+                .post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+                .tag(AffirmHttpRequest.class, affirmRequest)
+                .build();
+    }
+
+    private static AffirmRetryInterceptor interceptor(int maxAttempts) {
+        return new AffirmRetryInterceptor(maxAttempts, 1, 2, new Random());
+    }
+
+    @Test
+    public void transientFailuresOfGetsAreRetried() throws IOException {
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class)))
+                .thenThrow(new IOException("reset"))
+                .thenReturn(response(request, 503, null))
+                .thenReturn(response(request, 200, null));
+
+        Response response = interceptor(3).intercept(chain);
+
+        assertEquals(200, response.code());
+        verify(chain, times(3)).proceed(request);
+    }
+
+    @Test
+    public void attemptsAreBounded() throws IOException {
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, 500, null));
+
+        Response response = interceptor(2).intercept(chain);
+
+        assertEquals(500, response.code());
+        verify(chain, times(2)).proceed(request);
+    }
+
+    @Test
+    public void nonIdempotentPostsAreNotRetried() throws IOException {
+        Request checkout = post(false);
+        when(chain.request()).thenReturn(checkout);
+        when(chain.proceed(any(Request.class))).thenThrow(new IOException("reset"));
+        try {
+            interceptor(3).intercept(chain);
+            fail();
+        } catch (IOException expected) {
+            verify(chain, times(1)).proceed(checkout);
+        }
+    }
+
+    @Test
+    public void idempotentPostsAreRetried() throws IOException {
+        Request tracking = post(true);
+        when(chain.request()).thenReturn(tracking);
+        when(chain.proceed(any(Request.class)))
+                .thenThrow(new IOException("reset"))
+                .thenReturn(response(tracking, 200, null));
+        assertEquals(200, interceptor(3).intercept(chain).code());
+        verify(chain, times(2)).proceed(tracking);
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws IOException {
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, 404, null));
+
+        assertEquals(404, interceptor(3).intercept(chain).code());
+        verify(chain, times(1)).proceed(request);
+    }
+
+    @Test
+    public void longRetryAfterIsNotWaitedFor() throws IOException {
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, 429, "3600"));
+
+        assertEquals(429, interceptor(3).intercept(chain).code());
+        verify(chain, times(1)).proceed(request);
+    }
+
+    @Test
+    public void aCallCancelledDuringTheBackoffIsNotRetried() throws Exception {
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, 503, "1"));
+        Thread canceler = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+                return;
+            }
+            canceled.set(true);
+        });
+        canceler.start();
+
+        try {
+            interceptor(3).intercept(chain);
+            fail();
+        } catch (IOException expected) {
+            verify(chain, times(1)).proceed(request);
+        } finally {
+            canceler.join();
+        }
+    }
+
+    @Test
+    public void aBackoffPastTheDeadlineIsNotWaitedFor() throws IOException {
+        timeout.timeout(500, TimeUnit.MILLISECONDS);
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, 503, "1"));
+
+        long start = System.nanoTime();
+        assertEquals(503, interceptor(3).intercept(chain).code());
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        verify(chain, times(1)).proceed(request);
+    }
+
+    @Test
+    public void aFailurePastTheDeadlineIsThrown() throws IOException {
+        timeout.timeout(500, TimeUnit.MILLISECONDS);
+        Request request = new Request.Builder().url(URL).build();
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenThrow(new IOException("reset"));
+        AffirmRetryInterceptor interceptor =
+                new AffirmRetryInterceptor(3, 1000, 1000, new Random() {
+                    @Override
+                    public double nextDouble() {
+                        return 0.99;
+                    }
+                });
+
+        try {
+            interceptor.intercept(chain);
+            fail();
+        } catch (IOException expected) {
+            assertEquals("reset", expected.getMessage());
+            verify(chain, times(1)).proceed(request);
+        }
+    }
+
+    @Test
+    public void retryAfterIsParsed() {
+        Request request = new Request.Builder().url(URL).build();
+
+        assertEquals(2000, AffirmRetryInterceptor.retryAfterMillis(response(request, 503, "2")));
+        assertEquals(0, AffirmRetryInterceptor.retryAfterMillis(
+                response(request, 503, "Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(-1, AffirmRetryInterceptor.retryAfterMillis(response(request, 503, null)));
+    }
+
+    @Test
+    public void backoffIsJitteredUnderTheCap() {
+        AffirmRetryInterceptor interceptor =
+                new AffirmRetryInterceptor(10, 100, 1000, new Random());
+        for (int attempt = 1; attempt < 40; attempt++) {
+            long cap = Math.min(1000, 100L << Math.min(attempt - 1, 30));
+            long delay = interceptor.backoffMillis(attempt);
+            assertTrue(delay >= 0 && delay < cap);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.affirm.android;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+
+import static com.affirm.android.AffirmConstants.TAG_CHECKOUT;
+import static com.affirm.android.AffirmConstants.TAG_GET_NEW_PROMO;
+import static com.affirm.android.AffirmConstants.TAG_WEB_ASSET;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmTimeoutPolicyTest {
+
+    private static final String URL = "https://sandbox.affirm.com/api/promos/v2/Y8CQXFF044903JC0";
+
+    private static AffirmHttpRequest request(String tag) {
+        return new AffirmHttpRequest.Builder()
+                .setUrl(URL)
+                .setMethod(AffirmHttpRequest.Method.GET)
+                .setTag(tag)
+                .build();
+    }
+
+    private static Call call(String tag) {
+        AffirmPlugins plugins = new AffirmPlugins(
+                new Affirm.Configuration.Builder("Y8CQXFF044903JC0", Affirm.Environment.SANDBOX)
+                        .build()
+        );
+        return plugins.restClient().getCallForRequest(request(tag));
+    }
+
+    @Test
+    public void callsAreBoundedByTheDeadlineOfTheirTag() {
+        assertEquals(TimeUnit.SECONDS.toNanos(3), call(TAG_GET_NEW_PROMO).timeout().timeoutNanos());
+        assertEquals(TimeUnit.SECONDS.toNanos(90), call(TAG_CHECKOUT).timeout().timeoutNanos());
+        // No deadline of their own
+        assertEquals(0, call(TAG_WEB_ASSET).timeout().timeoutNanos());
+    }
+
+    @Test
+    public void promoRequestsUseShortTimeouts() throws IOException {
+        Request request = new Request.Builder()
+                .url(URL)
+                .tag(AffirmHttpRequest.class, request(TAG_GET_NEW_PROMO))
+                .build();
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.withConnectTimeout(anyInt(), any(TimeUnit.class))).thenReturn(chain);
+        when(chain.withReadTimeout(anyInt(), any(TimeUnit.class))).thenReturn(chain);
+
+        new AffirmTimeoutPolicy().intercept(chain);
+
+        verify(chain).withConnectTimeout(2000, TimeUnit.MILLISECONDS);
+        verify(chain).withReadTimeout(2000, TimeUnit.MILLISECONDS);
+        verify(chain).proceed(request);
+    }
+
+    @Test
+    public void otherRequestsKeepTheClientTimeouts() throws IOException {
+        Request request = new Request.Builder()
+                .url(URL)
+                .tag(AffirmHttpRequest.class, request(TAG_WEB_ASSET))
+                .build();
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+
+        new AffirmTimeoutPolicy().intercept(chain);
+
+        verify(chain, never()).withReadTimeout(anyInt(), any(TimeUnit.class));
+        verify(chain).proceed(request);
+    }
+}
@@ -0,0 +1,139 @@
+package com.affirm.android;
+
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import static com.affirm.android.AffirmConstants.TRACKER_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmTrackerQueueTest {
+
+    private static final long LONG_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        AffirmPlugins.reset();
+    }
+
+    @Test
+    public void pendingEventsSurviveRestart() throws Exception {
+        final File cacheDir = folder.newFolder();
+
+        AffirmTrackerQueue queue = new AffirmTrackerQueue(50, LONG_INTERVAL, cacheDir);
+        for (int i = 0; i < 3; i++) {
+            JsonObject event = new JsonObject();
+            event.addProperty("local_log_counter", i);
+            queue.enqueue(event);
+        }
+        queue.persist();
+
+        AffirmTrackerQueue restored = new AffirmTrackerQueue(50, LONG_INTERVAL, cacheDir);
+        assertEquals(3, restored.size());
+    }
+
+    @Test
+    public void spilledEventsAreWrittenLikeTheSentOnes() throws Exception {
+        final File cacheDir = folder.newFolder();
+
+        AffirmTrackerQueue queue = new AffirmTrackerQueue(50, LONG_INTERVAL, cacheDir);
+        JsonObject event = new JsonObject();
+        event.addProperty("event_name", "network error");
+        event.add("status_code", null);
+        queue.enqueue(event);
+        queue.persist();
+
+        final byte[] spilled =
+                Files.readAllBytes(new File(cacheDir, "affirm_tracker_events.json").toPath());
+        assertEquals("[{\"event_name\":\"network error\"}]",
+                new String(spilled, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void queueIsBounded() {
+        AffirmTrackerQueue queue = new AffirmTrackerQueue(Integer.MAX_VALUE, LONG_INTERVAL, null);
+        for (int i = 0; i < AffirmTrackerQueue.MAX_QUEUE_SIZE + 10; i++) {
+            queue.enqueue(new JsonObject());
+        }
+        assertEquals(AffirmTrackerQueue.MAX_QUEUE_SIZE, queue.size());
+    }
+
+    @Test
+    public void corruptSpillFileIsDiscarded() throws Exception {
+        final File cacheDir = folder.newFolder();
+        final File spill = new File(cacheDir, "affirm_tracker_events.json");
+        assertTrue(spill.createNewFile());
+        Files.write(spill.toPath(), "{not json".getBytes(StandardCharsets.UTF_8));
+
+        AffirmTrackerQueue queue = new AffirmTrackerQueue(50, LONG_INTERVAL, cacheDir);
+        assertEquals(0, queue.size());
+        assertFalse(spill.exists());
+    }
+
+    @Test
+    public void flushSendsThePendingEventsRightAway() throws Exception {
+        final List<String> batches = new CopyOnWriteArrayList<>();
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder()
+                        .addInterceptor(chain -> {
+                            if (!chain.request().url().encodedPath().equals(TRACKER_PATH)) {
+                                return chain.proceed(chain.request());
+                            }
+                            final Buffer body = new Buffer();
+                            chain.request().body().writeTo(body);
+                            batches.add(body.readUtf8());
+                            return new Response.Builder()
+                                    .request(chain.request())
+                                    .protocol(Protocol.HTTP_1_1)
+                                    .code(200)
+                                    .message("OK")
+                                    .body(ResponseBody.create(null, ""))
+                                    .build();
+                        })
+                        .build())
+                .build()
+        );
+
+        AffirmTrackerQueue queue = new AffirmTrackerQueue(50, LONG_INTERVAL, null);
+        for (int i = 0; i < 2; i++) {
+            JsonObject event = new JsonObject();
+            event.addProperty("local_log_counter", i);
+            queue.enqueue(event);
+        }
+        queue.flush();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batches.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals("[{\"local_log_counter\":0},{\"local_log_counter\":1}]", batches.get(0));
+        assertEquals(0, queue.size());
+    }
+}
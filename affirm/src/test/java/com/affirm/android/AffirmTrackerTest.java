@@ -14,8 +14,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import okhttp3.Request;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AffirmTrackerTest {
     private static AtomicInteger localLogCounter = new AtomicInteger();
@@ -49,6 +52,42 @@ public class AffirmTrackerTest {
         assertEquals(AffirmTracker.TrackingLevel.INFO.getLevel(), data.get("level").getAsString());
     }
 
+    @Test
+    public void testTrackingEventLeavesTheDataUntouched() {
+        JsonObject data = new JsonObject();
+        data.addProperty("url", "https://sandbox.affirm.com/api/v2/checkout/");
+
+        JsonObject event = AffirmTracker.createTrackingEvent(
+                AffirmTracker.TrackingEvent.NETWORK_ERROR, AffirmTracker.TrackingLevel.ERROR, data);
+
+        assertEquals(1, data.size());
+        assertEquals(data.get("url"), event.get("url"));
+        assertTrue(event.has("local_log_counter"));
+    }
+
+    @Test
+    public void testTrackingEventMatchesCopiedEvent() {
+        Request request = new Request.Builder()
+                .url("https://sandbox.affirm.com/api/v2/checkout/")
+                .build();
+        JsonObject eventData = AffirmTracker.createTrackingNetworkJsonObj(request, null);
+
+        JsonObject event = AffirmTracker.createTrackingEvent(
+                AffirmTracker.TrackingEvent.NETWORK_ERROR, AffirmTracker.TrackingLevel.ERROR,
+                eventData);
+        JsonObject copiedEvent = addTrackingData("network error", eventData,
+                AffirmTracker.TrackingLevel.ERROR);
+
+        // The counter and timestamp differ between any two events
+        for (String name : new String[]{"local_log_counter", "ts"}) {
+            event.remove(name);
+            copiedEvent.remove(name);
+        }
+        // Null values are left out when the events are sent
+        Gson gson = new Gson();
+        assertEquals(gson.toJson(copiedEvent), gson.toJson(event));
+    }
+
     @NonNull
     private static JsonObject addTrackingData(@NonNull String eventName,
                                               @Nullable JsonObject eventData,
@@ -0,0 +1,149 @@
+package com.affirm.android;
+
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.affirm.android.AffirmTracker.TrackingEvent.CHECKOUT_WEBVIEW_FAIL;
+import static com.affirm.android.AffirmTracker.TrackingEvent.NETWORK_ERROR;
+import static com.affirm.android.AffirmTracker.TrackingLevel.ERROR;
+import static com.affirm.android.AffirmTrackerThrottle.Decision.COLLAPSE;
+import static com.affirm.android.AffirmTrackerThrottle.Decision.DROP;
+import static com.affirm.android.AffirmTrackerThrottle.Decision.TRACK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AffirmTrackerThrottleTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toMillis(10);
+
+    private static JsonObject data(String url) {
+        JsonObject data = new JsonObject();
+        data.addProperty("url", url);
+        return data;
+    }
+
+    @Test
+    public void duplicatesAreCollapsedWithTheirCount() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 1000, WINDOW, new Random());
+
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("a"), 0));
+        assertEquals(COLLAPSE, throttle.admit(NETWORK_ERROR, ERROR, data("a"), 1));
+        for (int i = 2; i < 10; i++) {
+            assertEquals(DROP, throttle.admit(NETWORK_ERROR, ERROR, data("a"), i));
+        }
+        // Different data is a different event
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("b"), 10));
+
+        assertTrue(throttle.drain(WINDOW - 1).isEmpty());
+        List<AffirmTrackerThrottle.Duplicates> duplicates = throttle.drain(WINDOW);
+        assertEquals(1, duplicates.size());
+        assertEquals(NETWORK_ERROR, duplicates.get(0).event);
+        assertEquals(9, duplicates.get(0).count);
+
+        // A new window starts once the previous one ended
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("a"), WINDOW + 1));
+    }
+
+    @Test
+    public void collapsedDataIsCopied() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 1000, WINDOW, new Random());
+
+        JsonObject data = data("a");
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("a"), 0));
+        assertEquals(COLLAPSE, throttle.admit(NETWORK_ERROR, ERROR, data, 1));
+        data.addProperty("url", "changed");
+
+        List<AffirmTrackerThrottle.Duplicates> duplicates = throttle.drain(WINDOW);
+        assertEquals("a", duplicates.get(0).data.get("url").getAsString());
+    }
+
+    @Test
+    public void timingsDontMakeEventsDistinct() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 1000, WINDOW, new Random());
+
+        JsonObject first = data("a");
+        first.addProperty(AffirmTracker.TIMINGS, 120);
+        JsonObject second = data("a");
+        second.addProperty(AffirmTracker.TIMINGS, 250);
+
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, first, 0));
+        assertEquals(COLLAPSE, throttle.admit(NETWORK_ERROR, ERROR, second, 1));
+    }
+
+    @Test
+    public void responseIdsDontMakeEventsDistinct() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 1000, WINDOW, new Random());
+
+        for (int i = 0; i < 5; i++) {
+            JsonObject data = data("a");
+            data.addProperty("status_code", 503);
+            data.addProperty(AffirmConstants.X_AFFIRM_REQUEST_ID, "request-" + i);
+            data.addProperty(AffirmTracker.CLOUDFRONT_ID, "cf-" + i);
+            data.addProperty(AffirmTracker.CACHE, i % 2 == 0 ? "Miss from cloudfront"
+                    : "Error from cloudfront");
+            throttle.admit(NETWORK_ERROR, ERROR, data, i);
+        }
+
+        List<AffirmTrackerThrottle.Duplicates> duplicates = throttle.drain(WINDOW);
+        assertEquals(1, duplicates.size());
+        assertEquals(4, duplicates.get(0).count);
+
+        // A different status is a different event
+        JsonObject other = data("a");
+        other.addProperty("status_code", 500);
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, other, WINDOW));
+    }
+
+    @Test
+    public void eventsAreRateLimitedPerKind() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 3, 0, new Random());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("url" + i), 0));
+        }
+        assertEquals(DROP, throttle.admit(NETWORK_ERROR, ERROR, data("url3"), 0));
+        // Other kinds of events have their own budget
+        assertEquals(TRACK, throttle.admit(CHECKOUT_WEBVIEW_FAIL, ERROR, null, 0));
+
+        // 3 events per minute refill one token every 20 seconds
+        final long refill = TimeUnit.SECONDS.toMillis(20);
+        assertEquals(DROP, throttle.admit(NETWORK_ERROR, ERROR, data("url4"), refill / 2));
+        assertEquals(TRACK, throttle.admit(NETWORK_ERROR, ERROR, data("url5"), refill));
+    }
+
+    @Test
+    public void eventsAreSampled() {
+        AffirmTrackerThrottle none = new AffirmTrackerThrottle(0, 1000, 0, new Random());
+        assertEquals(DROP, none.admit(NETWORK_ERROR, ERROR, null, 0));
+
+        AffirmTrackerThrottle half = new AffirmTrackerThrottle(0.5, 1000, 0, new Random(42));
+        int tracked = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (half.admit(NETWORK_ERROR, ERROR, null, i * 1000L) == TRACK) {
+                tracked++;
+            }
+        }
+        assertTrue(tracked > 400 && tracked < 600);
+    }
+
+    @Test
+    public void trackedDuplicatesAreBounded() {
+        AffirmTrackerThrottle throttle = new AffirmTrackerThrottle(1, 1000, WINDOW, new Random());
+
+        throttle.admit(NETWORK_ERROR, ERROR, data("first"), 0);
+        throttle.admit(NETWORK_ERROR, ERROR, data("first"), 0);
+        for (int i = 0; i < AffirmTrackerThrottle.MAX_TRACKED_DUPLICATES; i++) {
+            throttle.admit(NETWORK_ERROR, ERROR, data("url" + i), 0);
+        }
+
+        // The oldest window was closed early to make room, its duplicates are kept
+        List<AffirmTrackerThrottle.Duplicates> duplicates = throttle.drain(0);
+        assertEquals(1, duplicates.size());
+        assertEquals(1, duplicates.get(0).count);
+    }
+}
@@ -0,0 +1,83 @@
+package com.affirm.android;
+
+import android.webkit.WebSettings;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class AffirmWebViewTest {
+
+    @After
+    public void tearDown() {
+        AffirmPlugins.reset();
+    }
+
+    private static void initialize(Affirm.WebViewCachePolicy policy) {
+        AffirmPlugins.reset();
+        Affirm.Configuration.Builder builder = new Affirm.Configuration.Builder(
+                "Y8CQXFF044903JC0", Affirm.Environment.SANDBOX);
+        if (policy != null) {
+            builder.setWebViewCachePolicy(policy);
+        }
+        Affirm.initialize(builder.build());
+    }
+
+    @Test
+    public void theCacheIsDisabledByDefault() {
+        initialize(null);
+
+        AffirmWebView webView = new AffirmWebView(RuntimeEnvironment.application);
+
+        assertTrue(AffirmWebView.isCacheDisabled());
+        assertEquals(WebSettings.LOAD_NO_CACHE, webView.getSettings().getCacheMode());
+        assertTrue(shadowOf(webView).wasClearCacheCalled());
+    }
+
+    @Test
+    public void theHttpCacheIsKept() {
+        initialize(Affirm.WebViewCachePolicy.HTTP_CACHE);
+
+        AffirmWebView webView = new AffirmWebView(RuntimeEnvironment.application);
+
+        assertFalse(AffirmWebView.isCacheDisabled());
+        assertEquals(WebSettings.LOAD_DEFAULT, webView.getSettings().getCacheMode());
+        assertFalse(shadowOf(webView).wasClearCacheCalled());
+    }
+
+    @Test
+    public void theAssetCacheIsCreatedWithTheWebView() {
+        initialize(Affirm.WebViewCachePolicy.ASSET_CACHE);
+        assertNull(AffirmPlugins.get().peekWebAssetCache());
+
+        new AffirmWebView(RuntimeEnvironment.application);
+
+        assertNotNull(AffirmPlugins.get().peekWebAssetCache());
+    }
+
+    @Test
+    public void theAssetCacheIsOnlyCreatedWhenEnabled() {
+        initialize(Affirm.WebViewCachePolicy.HTTP_CACHE);
+
+        new AffirmWebView(RuntimeEnvironment.application);
+
+        assertNull(AffirmPlugins.get().peekWebAssetCache());
+    }
+
+    @Test
+    public void theCacheIsDisabledBeforeInitialization() {
+        AffirmPlugins.reset();
+
+        assertTrue(AffirmWebView.isCacheDisabled());
+    }
+}
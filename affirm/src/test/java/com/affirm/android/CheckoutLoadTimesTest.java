@@ -0,0 +1,26 @@
+package com.affirm.android;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CheckoutLoadTimesTest {
+
+    @After
+    public void tearDown() {
+        CheckoutLoadTimes.reset();
+    }
+
+    @Test
+    public void averagesAreKeptPerPath() {
+        CheckoutLoadTimes.record(false, false, 900);
+        CheckoutLoadTimes.record(false, false, 1100);
+        CheckoutLoadTimes.record(true, true, 400);
+
+        assertEquals(1000, CheckoutLoadTimes.averageMillis(false, false));
+        assertEquals(400, CheckoutLoadTimes.averageMillis(true, true));
+        assertEquals(-1, CheckoutLoadTimes.averageMillis(true, false));
+        assertEquals(-1, CheckoutLoadTimes.averageMillis(false, true));
+    }
+}
@@ -0,0 +1,287 @@
+package com.affirm.android;
+
+import android.os.SystemClock;
+
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.Checkout;
+import com.affirm.android.model.CheckoutResponse;
+import com.affirm.android.utils.CheckoutFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static com.affirm.android.AffirmConstants.CHECKOUT_PATH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CheckoutPrefetcherTest {
+
+    private static final String REDIRECT_URL = "https://sandbox.affirm.com/checkout/ABC";
+
+    private final CheckoutServerStub server = new CheckoutServerStub();
+
+    @Before
+    public void setup() {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder().addInterceptor(server).build())
+                .build()
+        );
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        CheckoutPrefetcher.cancel();
+        server.release();
+        ShadowLooper.unPauseMainLooper();
+        AffirmPlugins.reset();
+    }
+
+    // Answers the checkout requests once released, the other requests go to the network
+    private static final class CheckoutServerStub implements Interceptor {
+        final CountDownLatch released = new CountDownLatch(1);
+        final Semaphore answered = new Semaphore(0);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger canceledCalls = new AtomicInteger();
+
+        void release() {
+            released.countDown();
+        }
+
+        void awaitCalls(int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (calls.get() < count) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+
+        void awaitAnswers(int count) throws InterruptedException {
+            assertTrue(answered.tryAcquire(count, 5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            final Request request = chain.request();
+            if (!request.url().encodedPath().equals(CHECKOUT_PATH)) {
+                return chain.proceed(request);
+            }
+
+            calls.incrementAndGet();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } finally {
+                if (chain.call().isCanceled()) {
+                    canceledCalls.incrementAndGet();
+                }
+                answered.release();
+            }
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create(MediaType.parse("application/json"),
+                            "{\"redirect_url\":\"" + REDIRECT_URL + "\"}"))
+                    .build();
+        }
+    }
+
+    // Records the results delivered to it
+    private static final class RecordingCallback implements InnerCheckoutCallback {
+        final List<CheckoutResponse> responses = new ArrayList<>();
+        final List<AffirmException> errors = new ArrayList<>();
+
+        @Override
+        public void onError(@NonNull AffirmException exception) {
+            errors.add(exception);
+        }
+
+        @Override
+        public void onSuccess(@NonNull CheckoutResponse response) {
+            responses.add(response);
+        }
+    }
+
+    // Waits for the checkout response to be posted to the main thread, then delivers it
+    private static void awaitMainThreadTasks() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Robolectric.getForegroundThreadScheduler().size() == 0) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    // Runs the main thread tasks until the callback gets a result
+    private static void awaitResult(RecordingCallback callback) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (callback.responses.isEmpty() && callback.errors.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+
+    private static Checkout otherCheckout() {
+        final Checkout checkout = CheckoutFactory.create();
+        return Checkout.builder()
+                .setItems(checkout.items())
+                .setShipping(checkout.shipping())
+                .setShippingAmount(0f)
+                .setTaxAmount(0f)
+                .setTotal(1000f)
+                .build();
+    }
+
+    @Test
+    public void preparingTheSameCheckoutTwiceCreatesItOnce() throws InterruptedException {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+        CheckoutPrefetcher.prepare(checkout, false);
+        server.release();
+
+        RecordingCallback callback = new RecordingCallback();
+        assertNotNull(CheckoutPrefetcher.take(checkout, false, callback));
+        awaitResult(callback);
+
+        assertEquals(1, callback.responses.size());
+        assertEquals(1, server.calls.get());
+    }
+
+    @Test
+    public void aCreatedCheckoutIsDeliveredWhenTaken() throws InterruptedException {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+        server.release();
+        awaitMainThreadTasks();
+
+        RecordingCallback callback = new RecordingCallback();
+        assertNotNull(CheckoutPrefetcher.take(checkout, false, callback));
+
+        assertEquals(1, callback.responses.size());
+        assertEquals(REDIRECT_URL, callback.responses.get(0).redirectUrl());
+    }
+
+    @Test
+    public void aCheckoutIsTakenOnlyOnce() {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+
+        assertNotNull(CheckoutPrefetcher.take(checkout, false, new RecordingCallback()));
+        assertNull(CheckoutPrefetcher.take(checkout, false, new RecordingCallback()));
+    }
+
+    @Test
+    public void anotherCheckoutDoesNotTakeThePreparedOne() {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+
+        assertNull(CheckoutPrefetcher.take(otherCheckout(), false, new RecordingCallback()));
+        CheckoutPrefetcher.prepare(checkout, false);
+        assertNull(CheckoutPrefetcher.take(checkout, true, new RecordingCallback()));
+    }
+
+    @Test
+    public void preparingAnotherCheckoutReplacesThePreparedOne() throws InterruptedException {
+        CheckoutPrefetcher.prepare(CheckoutFactory.create(), false);
+        Checkout other = otherCheckout();
+        CheckoutPrefetcher.prepare(other, false);
+        server.release();
+
+        RecordingCallback callback = new RecordingCallback();
+        assertNotNull(CheckoutPrefetcher.take(other, false, callback));
+        awaitResult(callback);
+
+        // The cancelled checkout doesn't deliver to the new one
+        assertEquals(1, callback.responses.size());
+        assertTrue(callback.errors.isEmpty());
+    }
+
+    @Test
+    public void anExpiredCheckoutIsNotTaken() throws InterruptedException {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+        server.release();
+        awaitMainThreadTasks();
+        long createdAt = SystemClock.elapsedRealtime();
+
+        assertNull(CheckoutPrefetcher.take(checkout, false, new RecordingCallback(),
+                createdAt + CheckoutPrefetcher.MAX_AGE_MILLIS));
+
+        CheckoutPrefetcher.prepare(checkout, false);
+        awaitMainThreadTasks();
+        createdAt = SystemClock.elapsedRealtime();
+        RecordingCallback callback = new RecordingCallback();
+        assertNotNull(CheckoutPrefetcher.take(checkout, false, callback,
+                createdAt + CheckoutPrefetcher.MAX_AGE_MILLIS - 1));
+        assertEquals(1, callback.responses.size());
+    }
+
+    @Test
+    public void aCancelledCheckoutIsNotTaken() throws InterruptedException {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+        server.awaitCalls(1);
+
+        CheckoutPrefetcher.cancel();
+        server.release();
+        server.awaitAnswers(1);
+
+        assertEquals(1, server.canceledCalls.get());
+        assertNull(CheckoutPrefetcher.take(checkout, false, new RecordingCallback()));
+    }
+
+    @Test
+    public void anotherCheckoutFallsBackToANewRequest() throws InterruptedException {
+        Checkout checkout = CheckoutFactory.create();
+        CheckoutPrefetcher.prepare(checkout, false);
+        server.awaitCalls(1);
+
+        // What the checkout activity does when nothing can be taken
+        Checkout other = otherCheckout();
+        RecordingCallback callback = new RecordingCallback();
+        assertNull(CheckoutPrefetcher.take(other, false, callback));
+        new CheckoutRequest(other, callback, false).create();
+        server.release();
+        awaitResult(callback);
+        server.awaitAnswers(2);
+
+        // The prepared checkout was cancelled, the new one delivered
+        assertEquals(1, server.canceledCalls.get());
+        assertEquals(2, server.calls.get());
+        assertEquals(1, callback.responses.size());
+        assertTrue(callback.errors.isEmpty());
+    }
+}
@@ -1,15 +1,54 @@
 package com.affirm.android;
 
+import com.affirm.android.exception.APIException;
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.AffirmAdapterFactory;
+import com.affirm.android.model.Checkout;
+import com.affirm.android.model.CheckoutResponse;
+import com.affirm.android.model.Merchant;
 import com.affirm.android.utils.CheckoutFactory;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 public class CheckoutRequestTest {
 
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(AffirmAdapterFactory.create())
+            .create();
+    private final Merchant merchant = Merchant.builder()
+            .setPublicApiKey("Y8CQXFF044903JC0")
+            .setConfirmationUrl("affirm://checkout/confirmed")
+            .setCancelUrl("affirm://checkout/cancelled")
+            .setName("merchant")
+            .build();
+
     @Before
     public void setup() {
         if (AffirmPlugins.get() == null) {
@@ -19,10 +58,118 @@ public class CheckoutRequestTest {
         }
     }
 
+    @After
+    public void tearDown() {
+        AffirmPlugins.reset();
+    }
+
     @Test
     public void testCheckout() {
         CheckoutRequest checkoutRequest = new CheckoutRequest(CheckoutFactory.create(), null, false);
         checkoutRequest.create();
     }
-}
 
+    @Test
+    public void testCheckoutJsonMatchesTreeJson() throws IOException {
+        Checkout checkout = CheckoutFactory.create();
+
+        assertEquals(treeJson(checkout), checkoutJson(checkout));
+    }
+
+    @Test
+    public void testLargeCartJsonMatchesTreeJson() throws IOException {
+        Checkout largeCart = CheckoutFactory.createLargeCart(500);
+        Checkout checkout = Checkout.builder()
+                .setItems(largeCart.items())
+                .setBilling(largeCart.billing())
+                .setShipping(largeCart.shipping())
+                .setShippingAmount(1000f)
+                .setTaxAmount(100f)
+                .setTotal(1100f)
+                .build();
+
+        assertEquals(treeJson(checkout), checkoutJson(checkout));
+    }
+
+    @Test
+    public void testMerchantMetadataIsReplaced() throws IOException {
+        // The tree keeps the replaced metadata in place, the single pass writes it last
+        Checkout checkout = CheckoutFactory.createLargeCart(10);
+        JsonParser jsonParser = new JsonParser();
+
+        assertEquals(jsonParser.parse(treeJson(checkout)),
+                jsonParser.parse(checkoutJson(checkout)));
+    }
+
+    @Test
+    public void testOversizedResponseFailsTheCheckout() throws InterruptedException {
+        StringBuilder redirectUrl = new StringBuilder("https://sandbox.affirm.com/checkout/");
+        while (redirectUrl.length() <= CheckoutRequest.MAX_RESPONSE_BYTES) {
+            redirectUrl.append('a');
+        }
+        String json = "{\"redirect_url\":\"" + redirectUrl + "\"}";
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder()
+                        .addInterceptor(chain -> new Response.Builder()
+                                .request(chain.request())
+                                .protocol(Protocol.HTTP_1_1)
+                                .code(200)
+                                .message("OK")
+                                .body(ResponseBody.create(
+                                        MediaType.parse("application/json"), json))
+                                .build())
+                        .build())
+                .build()
+        );
+
+        final List<AffirmException> errors = new ArrayList<>();
+        new CheckoutRequest(CheckoutFactory.create(), new InnerCheckoutCallback() {
+            @Override
+            public void onError(@NonNull AffirmException exception) {
+                errors.add(exception);
+            }
+
+            @Override
+            public void onSuccess(@NonNull CheckoutResponse response) {
+                throw new AssertionError("The oversized response was decoded");
+            }
+        }, false).create();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (errors.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertTrue(errors.get(0) instanceof APIException);
+    }
+
+    private String checkoutJson(Checkout checkout) throws IOException {
+        StringWriter writer = new StringWriter();
+        CheckoutRequest.writeCheckoutJson(gson, writer, checkout, merchant);
+        return writer.toString();
+    }
+
+    // How the request used to be serialized: to strings, parsed back into trees and patched
+    private String treeJson(Checkout checkout) {
+        JsonParser jsonParser = new JsonParser();
+
+        JsonObject merchantJson = jsonParser.parse(gson.toJson(merchant)).getAsJsonObject();
+        JsonObject metadataJson = new JsonObject();
+        merchantJson.addProperty("user_confirmation_url_action", "GET");
+
+        JsonObject checkoutJson = jsonParser.parse(gson.toJson(checkout)).getAsJsonObject();
+        checkoutJson.add("merchant", merchantJson);
+        checkoutJson.addProperty("api_version", "v2");
+
+        metadataJson.addProperty("platform_type", "Affirm Android SDK");
+        metadataJson.addProperty("platform_affirm", BuildConfig.VERSION_NAME);
+        checkoutJson.add("metadata", metadataJson);
+
+        JsonObject jsonRequest = new JsonObject();
+        jsonRequest.add("checkout", checkoutJson);
+        return jsonRequest.toString();
+    }
+}
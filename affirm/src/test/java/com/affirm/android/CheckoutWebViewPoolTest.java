@@ -0,0 +1,78 @@
+package com.affirm.android;
+
+import android.app.Activity;
+import android.content.MutableContextWrapper;
+import android.webkit.WebView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowWebView;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class CheckoutWebViewPoolTest {
+
+    private Activity activity;
+
+    @Before
+    public void setup() {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .build()
+        );
+        CheckoutWebViewPool.reset();
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @After
+    public void tearDown() {
+        CheckoutWebViewPool.reset();
+        AffirmPlugins.reset();
+    }
+
+    @Test
+    public void theWarmWebViewPreconnectsToTheAffirmHosts() {
+        CheckoutWebViewPool.warm(activity.getApplicationContext());
+        assertTrue(CheckoutWebViewPool.isWarm());
+
+        WebView webView = CheckoutWebViewPool.acquire(activity);
+
+        ShadowWebView.LoadDataWithBaseURL preconnect =
+                shadowOf(webView).getLastLoadDataWithBaseURL();
+        assertTrue(preconnect.data.contains(AffirmPlugins.get().baseUrl()));
+        assertTrue(preconnect.data.contains(AffirmPlugins.get().baseJsUrl()));
+    }
+
+    @Test
+    public void theWarmWebViewIsHandedOutOnce() {
+        CheckoutWebViewPool.warm(activity.getApplicationContext());
+
+        WebView warm = CheckoutWebViewPool.acquire(activity);
+        assertFalse(CheckoutWebViewPool.isWarm());
+        WebView cold = CheckoutWebViewPool.acquire(activity);
+
+        assertNotSame(warm, cold);
+        // Bound to the checkout activity while it shows the checkout
+        assertSame(activity, ((MutableContextWrapper) warm.getContext()).getBaseContext());
+    }
+
+    @Test
+    public void theWarmWebViewForgetsThePreconnectPage() {
+        CheckoutWebViewPool.warm(activity.getApplicationContext());
+
+        WebView webView = CheckoutWebViewPool.acquire(activity);
+
+        // Back from the checkout must leave it, not go to the preconnect page
+        assertTrue(shadowOf(webView).wasClearHistoryCalled());
+    }
+}
@@ -0,0 +1,39 @@
+package com.affirm.android;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.truth.Truth;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class HtmlTemplateTest {
+
+    @Test
+    public void rendersAllPlaceholdersInOnePass() {
+        HtmlTemplate template = HtmlTemplate.compile("<p>{{HTML_FRAGMENT}}</p>{{HTML_FRAGMENT}}");
+
+        Truth.assertThat(template.render(ImmutableMap.of("HTML_FRAGMENT", "<b>a</b>")))
+                .isEqualTo("<p><b>a</b></p><b>a</b>");
+    }
+
+    @Test
+    public void keepsUnknownPlaceholders() {
+        HtmlTemplate template = HtmlTemplate.compile("a {{MISSING}} b {{ unclosed");
+
+        Truth.assertThat(template.render(Collections.<String, String>emptyMap()))
+                .isEqualTo("a {{MISSING}} b {{ unclosed");
+    }
+
+    @Test
+    public void escapesPerPlaceholder() {
+        HtmlTemplate template = HtmlTemplate.compile(
+                "var key = \"{{API_KEY}}\"; <iframe src=\"{{URL2}}\">");
+
+        Truth.assertThat(template.render(ImmutableMap.of(
+                "API_KEY", "a\"</script>",
+                "URL2", "https://a.com/?b=1&c=2")))
+                .isEqualTo("var key = \"a\\\"\\u003C/script>\"; "
+                        + "<iframe src=\"https://a.com/?b=1&amp;c=2\">");
+    }
+}
@@ -0,0 +1,53 @@
+package com.affirm.android;
+
+import com.google.common.truth.Truth;
+
+import org.junit.Test;
+
+public class PromoAmountBucketingTest {
+
+    @Test
+    public void bucketCents() {
+        Truth.assertThat(PromoAmountBucketing.bucketCents(1999, 500)).isEqualTo(2000);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(2001, 500)).isEqualTo(2000);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(2250, 500)).isEqualTo(2500);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(1999, 0)).isEqualTo(1999);
+    }
+
+    @Test
+    public void bucketCentsKeepsSmallAmounts() {
+        Truth.assertThat(PromoAmountBucketing.bucketCents(100, 500)).isEqualTo(100);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(499, 500)).isEqualTo(499);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(0, 500)).isEqualTo(0);
+    }
+
+    @Test
+    public void bucketCentsIsExactForLargeAmounts() {
+        // 16,777,217 cents isn't representable as a float
+        Truth.assertThat(PromoAmountBucketing.bucketCents(16777217, 2)).isEqualTo(16777218);
+        Truth.assertThat(PromoAmountBucketing.bucketCents(Integer.MAX_VALUE, 500))
+                .isEqualTo(2147483500);
+        // Kept as is rather than overflowing
+        Truth.assertThat(PromoAmountBucketing.bucketCents(Integer.MAX_VALUE, 1000))
+                .isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void rescaleMonthlyPayment() {
+        Truth.assertThat(PromoAmountBucketing.rescale("Starting at $50/mo with {affirm_logo}",
+                100000, 110000))
+                .isEqualTo("Starting at $55/mo with {affirm_logo}");
+        Truth.assertThat(PromoAmountBucketing.rescale("As low as $9.17/mo", 10000, 12000))
+                .isEqualTo("As low as $11.00/mo");
+        Truth.assertThat(PromoAmountBucketing.rescale("As low as $1,000/mo", 100000, 200000))
+                .isEqualTo("As low as $2,000/mo");
+    }
+
+    @Test
+    public void rescaleKeepsTextWithoutAmount() {
+        Truth.assertThat(PromoAmountBucketing.rescale("Buy in monthly payments", 2000, 1999))
+                .isEqualTo("Buy in monthly payments");
+        Truth.assertThat(PromoAmountBucketing.rescale("As low as $50/mo", 2000, 2000))
+                .isEqualTo("As low as $50/mo");
+    }
+}
@@ -0,0 +1,176 @@
+package com.affirm.android;
+
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.utils.PromoServerStub;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromoBatchTest {
+
+    private final PromoServerStub server = new PromoServerStub();
+
+    private void initialize(int bucketCents) {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder().addInterceptor(server).build())
+                .setPromoAmountBucket(bucketCents)
+                .setCallbackExecutor(Runnable::run)
+                .build()
+        );
+    }
+
+    @After
+    public void tearDown() {
+        server.release();
+        AffirmPlugins.reset();
+    }
+
+    // Records the promo of each key
+    private static class RecordingCallback implements PromoBatch.Callback {
+        final Map<String, String> promos = new ConcurrentHashMap<>();
+        // Every key delivered, in order
+        final List<String> keys = new CopyOnWriteArrayList<>();
+        final CountDownLatch done;
+
+        RecordingCallback(int expectedResults) {
+            done = new CountDownLatch(expectedResults);
+        }
+
+        @Override
+        public void onPromoLoaded(@NonNull String key,
+                                  @NonNull String promo,
+                                  @NonNull String htmlPromo,
+                                  boolean showPrequal) {
+            promos.put(key, promo);
+            keys.add(key);
+            done.countDown();
+        }
+
+        @Override
+        public void onPromoFailed(@NonNull String key, @NonNull AffirmException exception) {
+            keys.add(key);
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void entriesOfTheSameBucketShareOneCall() throws InterruptedException {
+        initialize(10000);
+        PromoBatch batch = PromoBatch.builder()
+                .add("a", 480f)
+                .add("b", 520f)
+                .build();
+        RecordingCallback callback = new RecordingCallback(2);
+
+        batch.load(callback);
+        server.release();
+
+        assertTrue(callback.await());
+        assertEquals(1, server.calls());
+        // The $500 promo is scaled back to each amount
+        assertEquals("Starting at $48/month with Affirm.", callback.promos.get("a"));
+        assertEquals("Starting at $52/month with Affirm.", callback.promos.get("b"));
+    }
+
+    @Test
+    public void requestsAreBoundedByMaxConcurrency() throws InterruptedException {
+        initialize(0);
+        PromoBatch.Builder builder = PromoBatch.builder().setMaxConcurrency(2);
+        for (int i = 1; i <= 6; i++) {
+            builder.add("key" + i, i * 100f);
+        }
+        RecordingCallback callback = new RecordingCallback(6);
+
+        builder.build().load(callback);
+        assertTrue(server.awaitCalls(2, 5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, server.calls());
+        server.release();
+
+        assertTrue(callback.await());
+        assertEquals(6, callback.promos.size());
+        assertEquals(6, server.calls());
+        assertEquals(2, server.maxInFlight());
+    }
+
+    @Test
+    public void reloadingRestartsTheBatch() throws InterruptedException {
+        initialize(0);
+        PromoBatch batch = PromoBatch.builder()
+                .add("a", 100f)
+                .add("b", 200f)
+                .setMaxConcurrency(1)
+                .build();
+        RecordingCallback first = new RecordingCallback(2);
+        RecordingCallback second = new RecordingCallback(2);
+
+        batch.load(first);
+        assertTrue(server.awaitCalls(1, 5, TimeUnit.SECONDS));
+        batch.load(second);
+        server.release();
+
+        // The completion of the first load doesn't take a slot of the second one
+        assertTrue(second.await());
+        // The cancelled call of the first load, then one call per entry
+        assertEquals(3, server.calls());
+        Thread.sleep(100);
+        // Nothing of the first load is delivered, to either callback
+        assertEquals(Arrays.asList("a", "b"), second.keys);
+        assertTrue(first.keys.isEmpty());
+    }
+
+    @Test
+    public void aCallbackCanReloadTheBatch() throws InterruptedException {
+        initialize(0);
+        final PromoBatch batch = PromoBatch.builder()
+                .add("a", 100f)
+                .add("b", 200f)
+                .setMaxConcurrency(1)
+                .build();
+        final RecordingCallback second = new RecordingCallback(2);
+        final RecordingCallback first = new RecordingCallback(1) {
+            @Override
+            public void onPromoLoaded(@NonNull String key,
+                                      @NonNull String promo,
+                                      @NonNull String htmlPromo,
+                                      boolean showPrequal) {
+                super.onPromoLoaded(key, promo, htmlPromo, showPrequal);
+                // On the thread delivering the result, the callback executor is direct
+                batch.load(second);
+            }
+        };
+        server.release();
+
+        batch.load(first);
+
+        assertTrue(second.await());
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("a"), first.keys);
+        assertEquals(Arrays.asList("a", "b"), second.keys);
+    }
+}
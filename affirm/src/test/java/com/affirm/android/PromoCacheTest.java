@@ -0,0 +1,68 @@
+package com.affirm.android;
+
+import com.affirm.android.model.Promo;
+import com.affirm.android.model.PromoConfig;
+import com.affirm.android.model.PromoResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromoCacheTest {
+
+    private static PromoResponse promoResponse(String ala) {
+        return PromoResponse.builder()
+                .setPromo(Promo.builder()
+                        .setAla(ala)
+                        .setHtmlAla(ala)
+                        .setPromoConfig(PromoConfig.builder()
+                                .setPromoPrequalEnabled(false)
+                                .setPromoStyle("fast")
+                                .build())
+                        .build())
+                .build();
+    }
+
+    @Test
+    public void freshEntryIsServed() {
+        PromoCache cache = new PromoCache(4, TimeUnit.MINUTES.toMillis(5));
+        cache.put("a", promoResponse("a"));
+
+        PromoCache.Entry entry = cache.get("a");
+        assertNotNull(entry);
+        assertEquals("a", entry.response.promo().ala());
+        assertTrue(cache.isFresh(entry));
+    }
+
+    @Test
+    public void expiredEntryIsStale() {
+        PromoCache cache = new PromoCache(4, 0);
+        cache.put("a", promoResponse("a"));
+
+        PromoCache.Entry entry = cache.get("a");
+        assertNotNull(entry);
+        assertFalse(cache.isFresh(entry));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        PromoCache cache = new PromoCache(2, TimeUnit.MINUTES.toMillis(5));
+        cache.put("a", promoResponse("a"));
+        cache.put("b", promoResponse("b"));
+        cache.get("a");
+        cache.put("c", promoResponse("c"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+}
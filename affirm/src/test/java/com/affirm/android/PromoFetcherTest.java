@@ -0,0 +1,213 @@
+package com.affirm.android;
+
+import com.affirm.android.model.PromoResponse;
+import com.affirm.android.utils.PromoServerStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromoFetcherTest {
+
+    private static final String URL =
+            "https://sandbox.affirm.com/api/promos/v2/Y8CQXFF044903JC0?amount=50000";
+
+    private final PromoServerStub server = new PromoServerStub();
+    private PromoFetcher fetcher;
+
+    // Accepts connections and never answers
+    private ServerSocket silentServer;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder().addInterceptor(server).build())
+                .build()
+        );
+        fetcher = new PromoFetcher();
+
+        silentServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        new Thread(() -> {
+            try {
+                while (true) {
+                    sockets.add(silentServer.accept());
+                }
+            } catch (IOException ignored) {
+                // Closed at the end of the test
+            }
+        }).start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.release();
+        silentServer.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        AffirmPlugins.reset();
+    }
+
+    // Records the results delivered to it
+    private static class RecordingListener implements PromoFetcher.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<PromoResponse> responses = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onSuccess(@NonNull PromoResponse promoResponse) {
+            responses.add(promoResponse);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception exception) {
+            done.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private String silentUrl(String path) {
+        return "http://127.0.0.1:" + silentServer.getLocalPort() + path;
+    }
+
+    @Test
+    public void listenersAreNotifiedWhenTheDeadlineExpires() throws InterruptedException {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        fetcher.fetch(silentUrl("/promo"), new PromoFetcher.Listener() {
+            @Override
+            public void onSuccess(@NonNull PromoResponse promoResponse) {
+                fail("The server never answers");
+            }
+
+            @Override
+            public void onFailure(@NonNull Exception exception) {
+                failure.set(exception);
+                failed.countDown();
+            }
+        });
+
+        // The 3s promo deadline cancels the call during its second attempt
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        assertNotNull(failure.get());
+    }
+
+    @Test
+    public void fetchesOfTheSameUrlShareOneCall() throws InterruptedException {
+        List<RecordingListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecordingListener listener = new RecordingListener();
+            fetcher.fetch(URL, listener);
+            listeners.add(listener);
+        }
+        server.release();
+
+        // Every listener gets the promo of the single call
+        for (RecordingListener listener : listeners) {
+            assertTrue(listener.await());
+            assertEquals(1, listener.responses.size());
+            assertEquals(PromoServerStub.PROMO, listener.responses.get(0).promo().ala());
+        }
+        assertEquals(1, server.calls());
+    }
+
+    @Test
+    public void cancellingOneSubscriberKeepsTheCallForTheOthers() throws InterruptedException {
+        RecordingListener cancelled = new RecordingListener();
+        RecordingListener remaining = new RecordingListener();
+        PromoFetcher.Subscription subscription = fetcher.fetch(URL, cancelled);
+        fetcher.fetch(URL, remaining);
+
+        subscription.cancel();
+        server.release();
+
+        assertTrue(remaining.await());
+        assertEquals(1, remaining.responses.size());
+        assertTrue(cancelled.responses.isEmpty());
+        assertEquals(0, server.canceledCalls());
+    }
+
+    @Test
+    public void subscriptionsCancelledDuringTheDeliveryAreNotNotified()
+            throws InterruptedException {
+        final RecordingListener second = new RecordingListener();
+        final AtomicReference<PromoFetcher.Subscription> secondSubscription =
+                new AtomicReference<>();
+        final RecordingListener first = new RecordingListener() {
+            @Override
+            public void onSuccess(@NonNull PromoResponse promoResponse) {
+                // e.g. the other promotion button was detached meanwhile
+                secondSubscription.get().cancel();
+                super.onSuccess(promoResponse);
+            }
+        };
+        fetcher.fetch(URL, first);
+        secondSubscription.set(fetcher.fetch(URL, second));
+        server.release();
+
+        assertTrue(first.await());
+        assertTrue(second.responses.isEmpty());
+    }
+
+    @Test
+    public void cancellingEverySubscriberCancelsTheCall() throws InterruptedException {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        PromoFetcher.Subscription firstSubscription = fetcher.fetch(URL, first);
+        PromoFetcher.Subscription secondSubscription = fetcher.fetch(URL, second);
+        assertTrue(server.awaitCalls(1, 5, TimeUnit.SECONDS));
+
+        firstSubscription.cancel();
+        secondSubscription.cancel();
+        server.release();
+
+        assertTrue(server.awaitAnswers(1, 5, TimeUnit.SECONDS));
+        assertEquals(1, server.canceledCalls());
+        assertTrue(first.responses.isEmpty());
+        assertTrue(second.responses.isEmpty());
+    }
+
+    @Test
+    public void fetchAfterCancellingStartsANewCall() throws InterruptedException {
+        fetcher.fetch(URL, new RecordingListener()).cancel();
+        RecordingListener listener = new RecordingListener();
+        fetcher.fetch(URL, listener);
+        server.release();
+
+        assertTrue(listener.await());
+        assertEquals(1, listener.responses.size());
+        // Not coalesced with the cancelled call
+        assertTrue(server.awaitCalls(2, 5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,136 @@
+package com.affirm.android;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromoHtmlRendererTest {
+
+    private static final Object LOGO = new Object();
+
+    @Test
+    public void rendersTextAndEntities() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<p>Starting at  <b>$50</b>/mo &amp; more</p>", null, null);
+
+        assertEquals("Starting at $50/mo & more", spanned.toString());
+        StyleSpan[] styleSpans = spanned.getSpans(0, spanned.length(), StyleSpan.class);
+        assertEquals(1, styleSpans.length);
+        assertEquals(Typeface.BOLD, styleSpans[0].getStyle());
+        assertEquals(12, spanned.getSpanStart(styleSpans[0]));
+    }
+
+    @Test
+    public void appliesClassRulesAndInlineStyles() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<span class=\"affirm-ala-price\">$50</span>"
+                        + "<span style=\"color: #f00\">/mo</span>",
+                ".affirm-ala-price { color: #0FA0EA; font-weight: bold; }", null);
+
+        ForegroundColorSpan[] colorSpans =
+                spanned.getSpans(0, spanned.length(), ForegroundColorSpan.class);
+        assertEquals(2, colorSpans.length);
+        assertEquals(Color.parseColor("#0FA0EA"), colorSpans[0].getForegroundColor());
+        assertEquals(Color.RED, colorSpans[1].getForegroundColor());
+    }
+
+    @Test
+    public void replacesLogoElement() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "$50/mo with <span class=\"__affirm-logo affirm-logo--blue\">Affirm</span>",
+                null, () -> LOGO);
+
+        assertEquals("$50/mo with \uFFFC", spanned.toString());
+        Object[] logos = spanned.getSpans(0, spanned.length(), Object.class);
+        assertEquals(1, logos.length);
+        assertEquals(LOGO, logos[0]);
+    }
+
+    @Test
+    public void keepsLogoTextWithoutLogo() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "$50/mo with <span class=\"affirm-logo\">Affirm</span> {affirm_logo}",
+                null, null);
+
+        assertEquals("$50/mo with Affirm", spanned.toString());
+    }
+
+    @Test
+    public void appliesStyleBlocks() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<style>.affirm-modal-trigger { color: #2984EE; font-style: italic; }</style>"
+                        + "<a class=\"affirm-modal-trigger\">Learn more</a>", null, null);
+
+        assertEquals("Learn more", spanned.toString());
+        ForegroundColorSpan[] colorSpans =
+                spanned.getSpans(0, spanned.length(), ForegroundColorSpan.class);
+        assertEquals(1, colorSpans.length);
+        assertEquals(Color.parseColor("#2984EE"), colorSpans[0].getForegroundColor());
+        StyleSpan[] styleSpans = spanned.getSpans(0, spanned.length(), StyleSpan.class);
+        assertEquals(1, styleSpans.length);
+        assertEquals(Typeface.ITALIC, styleSpans[0].getStyle());
+    }
+
+    @Test
+    public void unmatchedClosingTagsAreIgnored() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<b>$50</i>/mo</span></b> with Affirm", null, null);
+
+        assertEquals("$50/mo with Affirm", spanned.toString());
+        StyleSpan[] styleSpans = spanned.getSpans(0, spanned.length(), StyleSpan.class);
+        assertEquals(1, styleSpans.length);
+        assertEquals(0, spanned.getSpanStart(styleSpans[0]));
+        assertEquals(6, spanned.getSpanEnd(styleSpans[0]));
+    }
+
+    @Test
+    public void unclosedElementsEndWithTheMessage() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "Starting at <span class=\"affirm-ala-price\">$50",
+                ".affirm-ala-price { color: #0FA0EA; }", null);
+
+        assertEquals("Starting at $50", spanned.toString());
+        ForegroundColorSpan[] colorSpans =
+                spanned.getSpans(0, spanned.length(), ForegroundColorSpan.class);
+        assertEquals(1, colorSpans.length);
+        assertEquals(12, spanned.getSpanStart(colorSpans[0]));
+        assertEquals(15, spanned.getSpanEnd(colorSpans[0]));
+    }
+
+    @Test
+    public void malformedMarkupKeepsItsText() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<p <b>$50</b/mo <<with>> Affirm", null, null);
+
+        assertTrue(spanned.toString().contains("Affirm"));
+    }
+
+    @Test
+    public void logoClassesMatchWholeClassNames() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "$50/mo with <span class=\"not-affirm-logo\">Affirm</span>", null, () -> LOGO);
+
+        assertEquals("$50/mo with Affirm", spanned.toString());
+    }
+
+    @Test
+    public void nestedLogoElementsAreOneLogo() {
+        Spanned spanned = PromoHtmlRenderer.render(
+                "<span class=\"affirm-logo\">Aff<span class=\"affirm-logo\">irm</span></span>"
+                        + " $50/mo <span class=\"affirm-logo\">Affirm</span>",
+                null, () -> LOGO);
+
+        assertEquals("\uFFFC $50/mo \uFFFC", spanned.toString());
+        assertEquals(2, spanned.getSpans(0, spanned.length(), Object.class).length);
+    }
+}
@@ -0,0 +1,111 @@
+package com.affirm.android;
+
+import com.affirm.android.exception.AffirmException;
+import com.affirm.android.utils.PromoServerStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+import okhttp3.OkHttpClient;
+
+import static com.affirm.android.AffirmColor.AFFIRM_COLOR_TYPE_BLUE;
+import static com.affirm.android.AffirmLogoType.AFFIRM_DISPLAY_TYPE_LOGO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromoPrefetchTest {
+
+    private final PromoServerStub server = new PromoServerStub();
+    private final List<String> written = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder().addInterceptor(server).build())
+                .build()
+        );
+    }
+
+    @After
+    public void tearDown() {
+        server.release();
+        AffirmPlugins.reset();
+    }
+
+    // The request of a promotion button of the default local styling
+    private PromoRequest buttonRequest(float amount) {
+        return new PromoRequest(null, null, amount, false, AFFIRM_COLOR_TYPE_BLUE,
+                AFFIRM_DISPLAY_TYPE_LOGO, new SpannablePromoCallback() {
+                    @Override
+                    public void onPromoWritten(@NonNull String promo,
+                                               @NonNull String htmlPromo,
+                                               boolean showPrequal) {
+                        written.add(promo);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull AffirmException exception) {
+                        written.add(exception.toString());
+                    }
+                });
+    }
+
+    private static String url(int cents) {
+        return PromoRequest.promoUrl(null, null, cents, false, AFFIRM_COLOR_TYPE_BLUE,
+                AFFIRM_DISPLAY_TYPE_LOGO);
+    }
+
+    private static void awaitCached(String url) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (AffirmPlugins.get().promoCache().get(url) == null) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void prefetchedPromosAreServedFromTheCache() throws InterruptedException {
+        server.release();
+        Affirm.prefetchPromos(null, null, false, 100f, 200f);
+        awaitCached(url(10000));
+        awaitCached(url(20000));
+
+        buttonRequest(100f).create();
+
+        // Written right away, without another call
+        assertEquals(Collections.singletonList(PromoServerStub.PROMO), written);
+        assertEquals(2, server.calls());
+    }
+
+    @Test
+    public void aButtonJoinsThePrefetchInFlight() throws InterruptedException {
+        Affirm.prefetchPromos(null, null, false, 100f);
+        assertTrue(server.awaitCalls(1, 5, TimeUnit.SECONDS));
+
+        buttonRequest(100f).create();
+        server.release();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.isEmpty()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertEquals(Collections.singletonList(PromoServerStub.PROMO), written);
+        assertEquals(1, server.calls());
+    }
+}
@@ -1,15 +1,29 @@
 package com.affirm.android;
 
 import com.affirm.android.exception.AffirmException;
+import com.affirm.android.model.PromoResponse;
+import com.affirm.android.utils.PromoServerStub;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 
+import okhttp3.OkHttpClient;
+
+import static com.affirm.android.AffirmColor.AFFIRM_COLOR_TYPE_BLUE;
+import static com.affirm.android.AffirmLogoType.AFFIRM_DISPLAY_TYPE_LOGO;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 public class PromoRequestTest {
@@ -42,4 +56,55 @@ public class PromoRequestTest {
         affirmPromoRequest.create();
     }
 
+    @Test
+    public void anOlderFetchDoesNotOverwriteACachedPromo() throws InterruptedException {
+        final PromoServerStub server = new PromoServerStub();
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .setOkHttpClient(new OkHttpClient.Builder().addInterceptor(server).build())
+                .build()
+        );
+        final List<String> written = new ArrayList<>();
+        final PromoRequest request = new PromoRequest(null, null, 1100, false,
+                AFFIRM_COLOR_TYPE_BLUE, AFFIRM_DISPLAY_TYPE_LOGO, new SpannablePromoCallback() {
+                    @Override
+                    public void onPromoWritten(@NonNull String promo,
+                                               @NonNull String htmlPromo,
+                                               boolean showPrequal) {
+                        written.add(promo);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull AffirmException exception) {
+                        written.add(exception.toString());
+                    }
+                });
+
+        try {
+            request.create();
+            assertTrue(server.awaitCalls(1, 5, TimeUnit.SECONDS));
+
+            // Cached meanwhile, e.g. by a batch
+            final String url = PromoRequest.promoUrl(null, null, 110000, false,
+                    AFFIRM_COLOR_TYPE_BLUE, AFFIRM_DISPLAY_TYPE_LOGO);
+            AffirmPlugins.get().promoCache().put(url, AffirmPlugins.get().gson().fromJson(
+                    "{\"promo\":{\"ala\":\"Cached promo\",\"html_ala\":\"Cached promo\","
+                            + "\"config\":{\"promo_prequal_enabled\":false,"
+                            + "\"promo_style\":\"fast\"}}}",
+                    PromoResponse.class));
+            request.create();
+            server.release();
+            assertTrue(server.awaitAnswers(1, 5, TimeUnit.SECONDS));
+            for (int i = 0; i < 20; i++) {
+                Thread.sleep(10);
+                ShadowLooper.runUiThreadTasks();
+            }
+
+            assertEquals(Collections.singletonList("Cached promo"), written);
+        } finally {
+            server.release();
+            AffirmPlugins.reset();
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package com.affirm.android;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class PromotionWebViewPoolTest {
+
+    private Activity activity;
+
+    @Before
+    public void setup() {
+        AffirmPlugins.reset();
+        Affirm.initialize(new Affirm.Configuration.Builder("Y8CQXFF044903JC0",
+                Affirm.Environment.SANDBOX)
+                .build()
+        );
+        PromotionWebViewPool.reset();
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+    }
+
+    @After
+    public void tearDown() {
+        PromotionWebViewPool.reset();
+        AffirmPlugins.reset();
+    }
+
+    @Test
+    public void atMostMaxIdleWebViewsAreKept() {
+        List<PromotionWebView> webViews = new ArrayList<>();
+        for (int i = 0; i < PromotionWebViewPool.MAX_IDLE + 2; i++) {
+            webViews.add(PromotionWebViewPool.acquire(activity));
+        }
+        for (PromotionWebView webView : webViews) {
+            PromotionWebViewPool.release(webView);
+        }
+
+        assertEquals(PromotionWebViewPool.MAX_IDLE, PromotionWebViewPool.idleCount());
+    }
+
+    @Test
+    public void releasedWebViewsAreRebound() {
+        PromotionWebView webView = PromotionWebViewPool.acquire(activity);
+        Context context = webView.getContext();
+        assertSame(activity, baseContext(context));
+
+        PromotionWebViewPool.release(webView);
+        // Idle, the pool must not hold on to the activity
+        assertSame(activity.getApplicationContext(), baseContext(context));
+
+        Activity other = Robolectric.buildActivity(Activity.class).setup().get();
+        assertSame(webView, PromotionWebViewPool.acquire(other));
+        assertSame(other, baseContext(context));
+    }
+
+    @Test
+    public void aWebViewReleasedTwiceIsHandedOutOnce() {
+        PromotionWebView webView = PromotionWebViewPool.acquire(activity);
+
+        PromotionWebViewPool.release(webView);
+        PromotionWebViewPool.release(webView);
+        assertEquals(1, PromotionWebViewPool.idleCount());
+
+        Set<PromotionWebView> acquired = new HashSet<>();
+        acquired.add(PromotionWebViewPool.acquire(activity));
+        acquired.add(PromotionWebViewPool.acquire(activity));
+        assertEquals(2, acquired.size());
+    }
+
+    @Test
+    public void aDetachedButtonDoesNotBorrowAWebView() {
+        PromotionWebViewPool.release(PromotionWebViewPool.acquire(activity));
+        AffirmPromotionButton button = new AffirmPromotionButton(activity);
+        button.configWithHtmlStyling(true);
+
+        button.setLabel("<p>Starting at $50/month with Affirm.</p>");
+        assertEquals(1, PromotionWebViewPool.idleCount());
+
+        // Borrowed once attached, given back once detached
+        activity.setContentView(button);
+        assertEquals(0, PromotionWebViewPool.idleCount());
+        ((ViewGroup) button.getParent()).removeView(button);
+        assertEquals(1, PromotionWebViewPool.idleCount());
+    }
+
+    private static Context baseContext(Context context) {
+        return ((MutableContextWrapper) context).getBaseContext();
+    }
+}
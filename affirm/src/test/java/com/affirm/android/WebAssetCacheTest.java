@@ -0,0 +1,207 @@
+package com.affirm.android;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
+
+import static com.affirm.android.WebAssetCache.MAX_AGE_MILLIS;
+import static com.affirm.android.WebAssetCache.REVALIDATE_INTERVAL_MILLIS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class WebAssetCacheTest {
+
+    private static final String HOST = "cdn1-sandbox.affirm.com";
+    private static final String URL = "https://" + HOST + "/js/v2/affirm.js";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // The responses of the CDN, in order
+    private final Queue<Response.Builder> responses = new ConcurrentLinkedQueue<>();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private OkHttpClient client;
+    private WebAssetCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    requests.add(chain.request());
+                    return responses.remove()
+                            .request(chain.request())
+                            .protocol(Protocol.HTTP_1_1)
+                            .build();
+                })
+                .build();
+        cache = new WebAssetCache(folder.newFolder(), HOST, 1024 * 1024, client);
+    }
+
+    private static Response.Builder asset(String etag, String body) {
+        return new Response.Builder()
+                .code(200)
+                .message("OK")
+                .header("ETag", etag)
+                .header("Access-Control-Allow-Origin", "*")
+                .body(ResponseBody.create(
+                        MediaType.parse("application/javascript; charset=utf-8"), body));
+    }
+
+    private static Response.Builder status(int code) {
+        return new Response.Builder()
+                .code(code)
+                .message("")
+                .body(ResponseBody.create(null, ""));
+    }
+
+    private static WebResourceRequest get(String url) {
+        WebResourceRequest request = mock(WebResourceRequest.class);
+        when(request.getUrl()).thenReturn(Uri.parse(url));
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestHeaders()).thenReturn(Collections.emptyMap());
+        return request;
+    }
+
+    private static String read(WebResourceResponse response) throws IOException {
+        try (BufferedSource source = Okio.buffer(Okio.source(response.getData()))) {
+            return source.readUtf8();
+        }
+    }
+
+    // Waits for the background downloads to be stored
+    private void awaitDownloads() throws InterruptedException {
+        while (client.dispatcher().runningCallsCount() + client.dispatcher().queuedCallsCount()
+                > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void assetsAreDownloadedThenServedFromDisk() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1"));
+
+        assertNull(cache.intercept(get(URL), 0));
+        awaitDownloads();
+
+        WebResourceResponse response = cache.intercept(get(URL), 0);
+        assertNotNull(response);
+        assertEquals("application/javascript", response.getMimeType());
+        assertEquals("UTF-8", response.getEncoding());
+        assertEquals("*", response.getResponseHeaders().get("Access-Control-Allow-Origin"));
+        assertEquals("affirm v1", read(response));
+        // Not revalidated again within the interval
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void cachedAssetsAreRevalidated() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        responses.add(status(304));
+        WebResourceResponse response = cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS);
+        awaitDownloads();
+
+        assertEquals("affirm v1", read(response));
+        assertEquals("\"v1\"", requests.get(1).header("If-None-Match"));
+        assertEquals("affirm v1", read(cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS)));
+    }
+
+    @Test
+    public void updatedAssetsReplaceTheCachedOnes() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        responses.add(asset("\"v2\"", "affirm v2"));
+        WebResourceResponse stale = cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS);
+        awaitDownloads();
+
+        // A reader keeps the version it opened
+        assertEquals("affirm v1", read(stale));
+        assertEquals("affirm v2", read(cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS)));
+    }
+
+    @Test
+    public void goneAssetsAreRemoved() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        responses.add(status(404));
+        cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS);
+        awaitDownloads();
+
+        assertNull(cache.intercept(get(URL), REVALIDATE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void noStoreAssetsAreNotCached() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1").header("Cache-Control", "no-store"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        assertNull(cache.intercept(get(URL), 0));
+    }
+
+    @Test
+    public void expiredAssetsAreDownloadedAgain() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        responses.add(asset("\"v1\"", "affirm v1"));
+        assertNull(cache.intercept(get(URL), MAX_AGE_MILLIS));
+        awaitDownloads();
+
+        // Not revalidated, a 304 wouldn't tell how long it stays fresh
+        assertNull(requests.get(1).header("If-None-Match"));
+        assertEquals("affirm v1", read(cache.intercept(get(URL), MAX_AGE_MILLIS)));
+    }
+
+    @Test
+    public void aShorterMaxAgeIsRespected() throws Exception {
+        responses.add(asset("\"v1\"", "affirm v1").header("Cache-Control", "max-age=60"));
+        cache.intercept(get(URL), 0);
+        awaitDownloads();
+
+        assertNotNull(cache.intercept(get(URL), 59_999));
+        assertNull(cache.intercept(get(URL), 60_000));
+    }
+
+    @Test
+    public void otherHostsAreNotCached() {
+        assertNull(cache.intercept(get("https://www.affirm.com/js/v2/affirm.js"), 0));
+        assertNull(cache.intercept(get("http://" + HOST + "/js/v2/affirm.js"), 0));
+        assertTrue(requests.isEmpty());
+    }
+}
@@ -6,6 +6,7 @@ import com.affirm.android.model.Item;
 import com.affirm.android.model.Name;
 import com.affirm.android.model.Shipping;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,4 +45,30 @@ public class CheckoutFactory {
                 .setTotal(1100f)
                 .build();
     }
+
+    public static Checkout createLargeCart(int itemCount) {
+        final Map<String, Item> items = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            final String sku = "sku_" + i;
+            items.put(sku, Item.builder()
+                    .setDisplayName("Product number " + i + " with a long \"display\" name")
+                    .setImageUrl("http://www.image.com/" + i)
+                    .setQty(1 + i % 3)
+                    .setSku(sku)
+                    .setUnitPrice(10f + i)
+                    .setUrl("http://merchant.com/products/" + i)
+                    .build());
+        }
+
+        final Checkout checkout = create();
+        return Checkout.builder()
+                .setItems(items)
+                .setBilling(checkout.billing())
+                .setShipping(checkout.shipping())
+                .setShippingAmount(1000f)
+                .setTaxAmount(100f)
+                .setTotal(1100f)
+                .setMetadata(Collections.singletonMap("entity_name", "internal-sub_brand-name"))
+                .build();
+    }
 }
@@ -0,0 +1,109 @@
+package com.affirm.android.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Answers the promo requests with the same promo once released, to be added to the OkHttpClient
+ * given to the SDK. The other requests go to the network.
+ */
+public class PromoServerStub implements Interceptor {
+
+    public static final String PROMO = "Starting at $50/month with Affirm.";
+
+    private static final String PROMO_PATH = "/api/promos/";
+    private static final String PROMO_JSON = "{\"promo\":{\"ala\":\"" + PROMO + "\","
+            + "\"html_ala\":\"" + PROMO + "\","
+            + "\"config\":{\"promo_prequal_enabled\":false,\"promo_style\":\"fast\"}}}";
+
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final Semaphore answered = new Semaphore(0);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger canceledCalls = new AtomicInteger();
+
+    /**
+     * Answer the requests waiting for it, and the next ones right away.
+     */
+    public void release() {
+        released.countDown();
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    // The calls already cancelled when they were answered
+    public int canceledCalls() {
+        return canceledCalls.get();
+    }
+
+    /**
+     * @return true once {@code count} promo requests have been received
+     */
+    public boolean awaitCalls(int count, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (calls.get() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * @return true once {@code count} promo requests have been answered
+     */
+    public boolean awaitAnswers(int count, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return answered.tryAcquire(count, timeout, unit);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Request request = chain.request();
+        if (!request.url().encodedPath().startsWith(PROMO_PATH)) {
+            return chain.proceed(request);
+        }
+
+        calls.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        if (chain.call().isCanceled()) {
+            canceledCalls.incrementAndGet();
+        }
+        answered.release();
+
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(MediaType.parse("application/json"), PROMO_JSON))
+                .build();
+    }
+}